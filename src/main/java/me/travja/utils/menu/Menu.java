@@ -7,7 +7,7 @@ import java.util.Arrays;
 
 public class Menu {
 
-    protected static Menu lastMenu;
+    protected static final ThreadLocal<Menu> lastMenu = new ThreadLocal<>();
 
     private Menu parentMenu;
     private ArrayList<MenuOption> options = new ArrayList<>();
@@ -18,6 +18,7 @@ public class Menu {
     private MenuDirection direction = MenuDirection.VERTICAL;
     private boolean allowExit = true;
     private boolean looping = false;
+    private long selectionDelay = 1000;
 
     private int openedTimes = 0;
 
@@ -73,13 +74,13 @@ public class Menu {
         openedTimes++;
         int choice;
             do {
-                lastMenu = this; //This way, when we fall-through, the choice is already set to 0, but the last menu will be different, keeping it alive.
+                lastMenu.set(this); //This way, when we fall-through, the choice is already set to 0, but the last menu will be different, keeping it alive.
                 System.out.println();
                 //Display the menu to the user and ask for input, then run their choice.
                 choice = IOUtils.promptForInt(buildMessage(), allowExit ? 0 : 1, getOptions().size());
                 if (choice > 0)
                     runChoice(choice); //Fall-through (dropping menus) happens here in the case of a choice opening another menu.
-            } while (looping && (choice != 0 || (!this.equals(lastMenu) && choice == 0)));
+            } while (looping && (choice != 0 || (!this.equals(lastMenu.get()) && choice == 0)));
             //The loop should run if....
             // *The user hasn't selected 0
             // *We're dropping menus, and it's not from this menu
@@ -99,9 +100,9 @@ public class Menu {
                 getPerpetual().use();
         }
 
-        if (openedTimes == 1) {
+        if (openedTimes == 1 && selectionDelay > 0) {
             try {
-                Thread.sleep(1000);
+                Thread.sleep(selectionDelay);
             } catch (InterruptedException e) {
             }
         }
@@ -310,4 +311,20 @@ public class Menu {
     public boolean isLooping() {
         return this.looping;
     }
+
+    public long getSelectionDelay() {
+        return selectionDelay;
+    }
+
+    /**
+     * Sets how long, in milliseconds, the menu pauses after running a top-level choice. 1000 by default.
+     * Set this to 0 when driving the menu automatically, such as with {@link MenuReplay}.
+     *
+     * @param selectionDelay The delay in milliseconds
+     * @return The current Menu
+     */
+    public Menu setSelectionDelay(long selectionDelay) {
+        this.selectionDelay = selectionDelay;
+        return this;
+    }
 }
@@ -0,0 +1,324 @@
+package me.travja.utils.menu;
+
+import me.travja.utils.utils.FileUtils;
+import me.travja.utils.utils.IOUtils;
+import me.travja.utils.utils.JdkSupport;
+
+import java.io.BufferedReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Replays a recorded list of inputs against a {@link Menu} tree and measures how it holds up.<br>
+ * Record a session with {@link IOUtils#startRecording()} and {@link IOUtils#stopRecording()}, then hand the lines
+ * to this class. Each session gets a fresh tree from the supplier, since menus keep per-instance state while open.
+ * Remember to {@link Menu#setSelectionDelay(long)} to 0 on the supplied menus, or the delay will dominate the results.
+ */
+public class MenuReplay {
+
+    private final Supplier<Menu> menuSupplier;
+    private final List<String> script;
+    private int sessions = 1;
+    private int concurrency = 1;
+    private double rate = 0;
+    private boolean quiet = true;
+
+    public MenuReplay(Supplier<Menu> menuSupplier, List<String> script) {
+        this.menuSupplier = menuSupplier;
+        this.script = new ArrayList<>(script);
+    }
+
+    /**
+     * Loads a script saved with {@link #saveScript(List, String)}, one input per line.
+     *
+     * @param path The file to load
+     * @return The list of inputs, or an empty list if the file couldn't be read
+     */
+    public static List<String> loadScript(String path) {
+        String data = FileUtils.readFileFully(path);
+        List<String> script = new ArrayList<>();
+        if (data == null || data.isEmpty())
+            return script;
+        script.addAll(Arrays.asList(data.split("\n", -1)));
+        if (data.endsWith("\n"))
+            script.remove(script.size() - 1);
+        return script;
+    }
+
+    /**
+     * Saves a recorded script to the given file, one input per line.
+     *
+     * @param script The inputs to save
+     * @param path   The file to write to
+     */
+    public static void saveScript(List<String> script, String path) {
+        StringBuilder sb = new StringBuilder();
+        for (String line : script)
+            sb.append(line).append("\n");
+        FileUtils.write(path, sb.toString());
+    }
+
+    /**
+     * Sets how many times the script should be replayed in total. 1 by default.
+     *
+     * @param sessions The number of sessions
+     * @return The current MenuReplay
+     */
+    public MenuReplay setSessions(int sessions) {
+        this.sessions = Math.max(1, sessions);
+        return this;
+    }
+
+    /**
+     * Sets how many sessions may run at the same time. 1 by default.
+     *
+     * @param concurrency The number of threads to replay on
+     * @return The current MenuReplay
+     */
+    public MenuReplay setConcurrency(int concurrency) {
+        this.concurrency = Math.max(1, concurrency);
+        return this;
+    }
+
+    /**
+     * Sets how many sessions should be started per second. 0, the default, starts them as fast as possible.
+     *
+     * @param rate Sessions per second
+     * @return The current MenuReplay
+     */
+    public MenuReplay setRate(double rate) {
+        this.rate = Math.max(0, rate);
+        return this;
+    }
+
+    /**
+     * Sets whether menu output should be discarded while replaying. True by default.
+     *
+     * @param quiet boolean
+     * @return The current MenuReplay
+     */
+    public MenuReplay setQuiet(boolean quiet) {
+        this.quiet = quiet;
+        return this;
+    }
+
+    /**
+     * Runs every session and blocks until they have all finished.
+     *
+     * @return A {@link ReplayReport} with the measured results
+     */
+    public ReplayReport run() {
+        PrintStream out = System.out;
+        if (quiet)
+            System.setOut(new PrintStream(new OutputStream() {
+                @Override
+                public void write(int b) {
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) {
+                }
+            }));
+
+        ExecutorService executor = JdkSupport.newSessionExecutor(concurrency);
+        List<Long> latencies = Collections.synchronizedList(new ArrayList<>());
+        AtomicLong failures = new AtomicLong();
+        long interval = rate > 0 ? (long) (TimeUnit.SECONDS.toNanos(1) / rate) : 0;
+        long allocatedBefore = JdkSupport.totalAllocatedBytes();
+        long start = System.nanoTime();
+        long allocated = -1;
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < sessions; i++) {
+                long slot = start + interval * i;
+                futures.add(executor.submit(() -> {
+                    long wait = slot - System.nanoTime();
+                    if (wait > 0) {
+                        try {
+                            TimeUnit.NANOSECONDS.sleep(wait);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            return;
+                        }
+                    }
+                    ReplayReader reader = new ReplayReader(script);
+                    IOUtils.setReader(reader);
+                    try {
+                        menuSupplier.get().open();
+                    } catch (ReplayExhaustedException e) {
+                        //The script ran out before the menu closed. That's the end of this session.
+                    } catch (RuntimeException e) {
+                        failures.incrementAndGet();
+                    } finally {
+                        reader.finish();
+                        IOUtils.setReader(null);
+                        Menu.lastMenu.remove();
+                    }
+                    latencies.addAll(reader.latencies);
+                }));
+            }
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    failures.incrementAndGet();
+                }
+            }
+            long allocatedAfter = JdkSupport.totalAllocatedBytes();
+            if (allocatedBefore >= 0 && allocatedAfter >= 0)
+                allocated = allocatedAfter - allocatedBefore;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            executor.shutdownNow();
+            if (quiet)
+                System.setOut(out);
+        }
+        long elapsed = System.nanoTime() - start;
+
+        long[] sorted = new long[latencies.size()];
+        for (int i = 0; i < sorted.length; i++)
+            sorted[i] = latencies.get(i);
+        Arrays.sort(sorted);
+        return new ReplayReport(sessions, sorted, elapsed, allocated, failures.get());
+    }
+
+    /**
+     * Hands out the script one line at a time, timing how long the menu took between each request for input.
+     */
+    private static class ReplayReader extends BufferedReader {
+
+        private final List<String> script;
+        private final List<Long> latencies = new ArrayList<>();
+        private int index = 0;
+        private long last = -1;
+
+        ReplayReader(List<String> script) {
+            super(new StringReader(""));
+            this.script = script;
+        }
+
+        @Override
+        public String readLine() {
+            mark();
+            if (index >= script.size())
+                throw new ReplayExhaustedException();
+            return script.get(index++);
+        }
+
+        @Override
+        public boolean ready() {
+            return true;
+        }
+
+        private void mark() {
+            long now = System.nanoTime();
+            if (last >= 0)
+                latencies.add(now - last);
+            last = now;
+        }
+
+        private void finish() {
+            if (index > 0)
+                mark();
+        }
+    }
+
+    private static class ReplayExhaustedException extends RuntimeException {
+        ReplayExhaustedException() {
+            super("Replay script exhausted", null, false, false);
+        }
+    }
+
+    /**
+     * The results of a {@link MenuReplay} run. Latencies are per step, measured from one input being handed to the
+     * menu until the menu asks for the next one, so they cover the action, rendering and prompt parsing.
+     */
+    public static class ReplayReport {
+
+        private final int sessions;
+        private final long[] latencies;
+        private final long elapsed;
+        private final long allocated;
+        private final long failures;
+
+        ReplayReport(int sessions, long[] latencies, long elapsed, long allocated, long failures) {
+            this.sessions = sessions;
+            this.latencies = latencies;
+            this.elapsed = elapsed;
+            this.allocated = allocated;
+            this.failures = failures;
+        }
+
+        public int getSessions() {
+            return sessions;
+        }
+
+        public int getSteps() {
+            return latencies.length;
+        }
+
+        public long getFailures() {
+            return failures;
+        }
+
+        /**
+         * @return Total wall-clock time of the run in nanoseconds
+         */
+        public long getElapsedNanos() {
+            return elapsed;
+        }
+
+        /**
+         * @return Navigation steps completed per second
+         */
+        public double getThroughput() {
+            return elapsed == 0 ? 0 : latencies.length / (elapsed / 1e9);
+        }
+
+        /**
+         * Gets the given percentile of step latency.
+         *
+         * @param percentile A value between 0 and 100
+         * @return The latency in nanoseconds, or 0 if no steps were run
+         */
+        public long getPercentile(double percentile) {
+            if (latencies.length == 0)
+                return 0;
+            int index = (int) Math.ceil(percentile / 100 * latencies.length) - 1;
+            return latencies[Math.max(0, Math.min(latencies.length - 1, index))];
+        }
+
+        /**
+         * @return Bytes allocated across the JVM during the run, or -1 if the JVM doesn't support measuring it
+         */
+        public long getAllocatedBytes() {
+            return allocated;
+        }
+
+        /**
+         * @return Bytes allocated per second, or -1 if the JVM doesn't support measuring it
+         */
+        public double getAllocationRate() {
+            return allocated < 0 || elapsed == 0 ? -1 : allocated / (elapsed / 1e9);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d sessions, %d steps in %.1f ms (%.1f steps/s, %d failed)%n" +
+                            "latency p50=%.3f ms p90=%.3f ms p99=%.3f ms max=%.3f ms%n" +
+                            "allocated %d bytes (%.1f MB/s)",
+                    sessions, getSteps(), elapsed / 1e6, getThroughput(), failures,
+                    getPercentile(50) / 1e6, getPercentile(90) / 1e6, getPercentile(99) / 1e6, getPercentile(100) / 1e6,
+                    allocated, getAllocationRate() / (1024 * 1024));
+        }
+    }
+}
@@ -0,0 +1,323 @@
+package me.travja.utils.utils;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.charset.Charset;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Non-blocking counterparts to the read and write methods in {@link FileUtils}.<br>
+ * Each method returns straight away with a {@link CompletableFuture} that completes once the I/O is done,
+ * or completes exceptionally if it fails. Many operations may be in flight at once, up to {@link #getMaxInFlight()};
+ * past that, operations are queued and started as earlier ones finish. Nothing ever blocks waiting for a slot,
+ * so operations can safely be chained from each other's completion stages.
+ */
+public class AsyncFileUtils {
+
+    private static final ExecutorService executor = Executors.newFixedThreadPool(
+            Math.max(2, Runtime.getRuntime().availableProcessors()), new ThreadFactory() {
+                private final AtomicInteger count = new AtomicInteger();
+
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "TravjaUtils-IO-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
+    private static final Object lock = new Object();
+    private static final ArrayDeque<Runnable> pending = new ArrayDeque<>();
+    private static int maxInFlight = 64;
+    private static int running = 0;
+
+    public static int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    /**
+     * Sets how many operations may be in flight at once. Operations already running are unaffected,
+     * and queued operations are started straight away if the limit was raised. If it was lowered, queued
+     * operations wait until fewer than the new limit are running.
+     *
+     * @param max The maximum number of concurrent operations
+     */
+    public static void setMaxInFlight(int max) {
+        List<Runnable> start = new ArrayList<>();
+        synchronized (lock) {
+            maxInFlight = Math.max(1, max);
+            while (running < maxInFlight && !pending.isEmpty()) {
+                running++;
+                start.add(pending.poll());
+            }
+        }
+        for (Runnable operation : start)
+            executor.execute(operation);
+    }
+
+    /**
+     * Reads the file at the given path fully.
+     *
+     * @param name The path to the file to read
+     * @return A future holding the file contents
+     */
+    public static CompletableFuture<String> readFileFully(String name) {
+        return readFileFully(new File(name));
+    }
+
+    /**
+     * Reads the file fully, decoding it with the platform charset as {@link FileUtils#readFileFully(File)} does.
+     *
+     * @param file The file to read
+     * @return A future holding the file contents
+     */
+    public static CompletableFuture<String> readFileFully(File file) {
+        return readBytes(file).thenApply(bytes -> new String(bytes, Charset.defaultCharset()));
+    }
+
+    /**
+     * Reads the raw bytes of the file.
+     *
+     * @param file The file to read
+     * @return A future holding the file's bytes
+     */
+    public static CompletableFuture<byte[]> readBytes(File file) {
+        return withPermit(() -> doRead(file.toPath()));
+    }
+
+    /**
+     * Writes the given text to the file 'name'
+     *
+     * @param name The path of the file to write to
+     * @param text The text to write to the file
+     * @return A future that completes once the text is written
+     */
+    public static CompletableFuture<Void> write(String name, String text) {
+        return write(new File(name), text);
+    }
+
+    /**
+     * Writes the given text to the file, replacing its contents.
+     *
+     * @param file The file to write to
+     * @param text The text to write to the file
+     * @return A future that completes once the text is written
+     */
+    public static CompletableFuture<Void> write(File file, String text) {
+        return writeBytes(file, text.getBytes(Charset.defaultCharset()));
+    }
+
+    /**
+     * Writes the given bytes to the file, replacing its contents.
+     *
+     * @param file The file to write to
+     * @param data The bytes to write
+     * @return A future that completes once the bytes are written
+     */
+    public static CompletableFuture<Void> writeBytes(File file, byte[] data) {
+        return withPermit(() -> doWrite(file.toPath(), data));
+    }
+
+    /**
+     * Serializes an object and writes it to the given file.
+     *
+     * @param obj      The object to write
+     * @param filePath The file path to write to
+     * @return A future that completes once the object is written
+     */
+    public static CompletableFuture<Void> writeObjectToFile(Object obj, String filePath) {
+        return writeObjectToFile(obj, new File(filePath));
+    }
+
+    /**
+     * Serializes an object and writes it to the given file.
+     *
+     * @param obj  The object to write
+     * @param file The file to write to
+     * @return A future that completes once the object is written
+     */
+    public static CompletableFuture<Void> writeObjectToFile(Object obj, File file) {
+        return withPermit(() -> CompletableFuture.supplyAsync(() -> {
+            try {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                ObjectOutputStream objectOut = new ObjectOutputStream(bytes);
+                objectOut.writeObject(obj);
+                objectOut.close();
+                return bytes.toByteArray();
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, executor).thenCompose(data -> doWrite(file.toPath(), data)));
+    }
+
+    /**
+     * Reads a serialized object from the given file.
+     *
+     * @param file The file to read from
+     * @return A future holding the object that was read
+     */
+    public static CompletableFuture<Object> readObject(File file) {
+        return withPermit(() -> doRead(file.toPath()).thenApplyAsync(data -> {
+            try (ObjectInputStream oin = new ObjectInputStream(new ByteArrayInputStream(data))) {
+                return oin.readObject();
+            } catch (IOException | ClassNotFoundException e) {
+                throw new CompletionException(e);
+            }
+        }, executor));
+    }
+
+    /**
+     * Reads a serialized object from the file at the given path.
+     *
+     * @param filePath The path to read from
+     * @return A future holding the object that was read
+     */
+    public static CompletableFuture<Object> readObject(String filePath) {
+        return readObject(new File(filePath));
+    }
+
+    /**
+     * Starts the operation if a slot is free, or queues it until one is. The slot is freed before the returned
+     * future completes, so anything chained onto it can start straight away.
+     */
+    private static <T> CompletableFuture<T> withPermit(Supplier<CompletableFuture<T>> operation) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Runnable start = () -> {
+            CompletableFuture<T> future;
+            try {
+                future = operation.get();
+            } catch (RuntimeException e) {
+                release();
+                result.completeExceptionally(e);
+                return;
+            }
+            future.whenComplete((value, error) -> {
+                release();
+                if (error != null)
+                    result.completeExceptionally(error);
+                else
+                    result.complete(value);
+            });
+        };
+
+        boolean now;
+        synchronized (lock) {
+            now = running < maxInFlight;
+            if (now)
+                running++;
+            else
+                pending.add(start);
+        }
+        if (now)
+            start.run();
+        return result;
+    }
+
+    /**
+     * Hands the finished operation's slot to the next queued one, if there is one and the limit
+     * hasn't been lowered below what's running.
+     */
+    private static void release() {
+        Runnable next = null;
+        synchronized (lock) {
+            if (running <= maxInFlight)
+                next = pending.poll();
+            if (next == null)
+                running--;
+        }
+        if (next != null)
+            executor.execute(next);
+    }
+
+    private static CompletableFuture<byte[]> doRead(Path path) {
+        CompletableFuture<byte[]> future = new CompletableFuture<>();
+        Set<OpenOption> options = new HashSet<>(Arrays.asList(StandardOpenOption.READ));
+        try {
+            AsynchronousFileChannel channel = AsynchronousFileChannel.open(path, options, executor);
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE - 8) {
+                channel.close();
+                future.completeExceptionally(new IOException("File is too large to read fully: " + path));
+                return future;
+            }
+            ByteBuffer buffer = ByteBuffer.allocate((int) size);
+            if (size == 0) {
+                channel.close();
+                future.complete(buffer.array());
+                return future;
+            }
+            channel.read(buffer, 0, buffer, new CompletionHandler<Integer, ByteBuffer>() {
+                @Override
+                public void completed(Integer read, ByteBuffer buf) {
+                    if (read >= 0 && buf.hasRemaining()) {
+                        channel.read(buf, buf.position(), buf, this);
+                        return;
+                    }
+                    close(channel);
+                    //The file may have shrunk while we were reading it
+                    future.complete(buf.hasRemaining() ? Arrays.copyOf(buf.array(), buf.position()) : buf.array());
+                }
+
+                @Override
+                public void failed(Throwable e, ByteBuffer buf) {
+                    close(channel);
+                    future.completeExceptionally(e);
+                }
+            });
+        } catch (IOException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    private static CompletableFuture<Void> doWrite(Path path, byte[] data) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        Set<OpenOption> options = new HashSet<>(Arrays.asList(StandardOpenOption.WRITE,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING));
+        try {
+            AsynchronousFileChannel channel = AsynchronousFileChannel.open(path, options, executor);
+            ByteBuffer buffer = ByteBuffer.wrap(data);
+            if (!buffer.hasRemaining()) {
+                channel.close();
+                future.complete(null);
+                return future;
+            }
+            channel.write(buffer, 0, buffer, new CompletionHandler<Integer, ByteBuffer>() {
+                @Override
+                public void completed(Integer written, ByteBuffer buf) {
+                    if (buf.hasRemaining()) {
+                        channel.write(buf, buf.position(), buf, this);
+                        return;
+                    }
+                    close(channel);
+                    future.complete(null);
+                }
+
+                @Override
+                public void failed(Throwable e, ByteBuffer buf) {
+                    close(channel);
+                    future.completeExceptionally(e);
+                }
+            });
+        } catch (IOException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    private static void close(AsynchronousFileChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,277 @@
+package me.travja.utils.utils;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Reads a file written by {@link BlockCompressedOutputStream}.<br>
+ * The next few blocks are decompressed ahead of time on other threads while reading, and {@link #seek(long)} jumps
+ * to any uncompressed position by decompressing only the block that holds it.
+ */
+public class BlockCompressedInputStream extends InputStream {
+
+    private static final ThreadLocal<Inflater> inflaters = new ThreadLocal<>();
+
+    private final FileChannel channel;
+    private final long[] offsets;
+    private final int[] rawLengths;
+    private final long[] starts;
+    private final long length;
+    private final long indexOffset;
+    private final int readAhead = Math.max(1, Runtime.getRuntime().availableProcessors());
+    private final CompletableFuture<byte[]>[] ahead;
+
+    private int block = -1;
+    private byte[] data = new byte[0];
+    private int pos = 0;
+
+    @SuppressWarnings("unchecked")
+    public BlockCompressedInputStream(File file) throws IOException {
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            ByteBuffer header = ByteBuffer.allocate(16);
+            readFully(header, 0);
+            if (size < 28 || header.getInt(0) != BlockCompressedOutputStream.MAGIC)
+                throw new IOException(file + " isn't block compressed");
+            readFully(header, size - 16);
+            if (header.getInt(12) != BlockCompressedOutputStream.MAGIC)
+                throw new IOException(file + " is missing its block index. Was it closed?");
+            indexOffset = header.getLong(0);
+            int count = header.getInt(8);
+            //The index sits right before the trailer, so its size has to account for the rest of the file
+            if (count < 0 || indexOffset < 12 || indexOffset + count * 12L != size - 16)
+                throw new IOException(file + " has a corrupt block index");
+
+            ByteBuffer index = ByteBuffer.allocate(count * 12);
+            readFully(index, indexOffset);
+            offsets = new long[count];
+            rawLengths = new int[count];
+            starts = new long[count + 1];
+            for (int i = 0; i < count; i++) {
+                offsets[i] = index.getLong(i * 12);
+                rawLengths[i] = index.getInt(i * 12 + 8);
+                if (offsets[i] < 12 || offsets[i] + 8 > indexOffset || rawLengths[i] < 0)
+                    throw new IOException(file + " has a corrupt entry for block " + i);
+                starts[i + 1] = starts[i] + rawLengths[i];
+            }
+            length = starts[count];
+            ahead = new CompletableFuture[count];
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Checks whether a file starts with the block compressed header.
+     *
+     * @param file The file to check
+     * @return Whether it looks like a block compressed file
+     */
+    public static boolean isBlockCompressed(File file) {
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            return in.readInt() == BlockCompressedOutputStream.MAGIC;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @return The total uncompressed length of the data
+     */
+    public long length() {
+        return length;
+    }
+
+    /**
+     * @return How many blocks the data is split into
+     */
+    public int getBlockCount() {
+        return offsets.length;
+    }
+
+    /**
+     * @return The current uncompressed position
+     */
+    public long position() {
+        return block < 0 ? 0 : starts[block] + pos;
+    }
+
+    /**
+     * Moves to the given uncompressed position.
+     *
+     * @param position Where to read from next
+     * @throws IOException if the block holding the position can't be read
+     */
+    public void seek(long position) throws IOException {
+        if (position < 0 || position > length)
+            throw new IOException("Position " + position + " is outside 0-" + length);
+        int target = Arrays.binarySearch(starts, position);
+        if (target < 0)
+            target = -target - 2;
+        if (target >= offsets.length) {
+            block = offsets.length;
+            data = new byte[0];
+            pos = 0;
+            return;
+        }
+        load(target);
+        pos = (int) (position - starts[target]);
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!ensureData())
+            return -1;
+        return data[pos++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0)
+            return 0;
+        if (!ensureData())
+            return -1;
+        int n = Math.min(len, data.length - pos);
+        System.arraycopy(data, pos, b, off, n);
+        pos += n;
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long from = position();
+        long to = Math.min(length, from + Math.max(0, n));
+        seek(to);
+        return to - from;
+    }
+
+    @Override
+    public int available() {
+        return data.length - pos;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Decompresses every block in parallel and returns the whole contents.
+     *
+     * @return The uncompressed data
+     * @throws IOException if a block can't be read
+     */
+    public byte[] readAll() throws IOException {
+        if (length > Integer.MAX_VALUE - 8)
+            throw new IOException("Too large to read into an array: " + length);
+        byte[] all = new byte[(int) length];
+        try {
+            IntStream.range(0, offsets.length).parallel().forEach(i -> {
+                try {
+                    byte[] part = decompress(i);
+                    System.arraycopy(part, 0, all, (int) starts[i], part.length);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return all;
+    }
+
+    private boolean ensureData() throws IOException {
+        while (pos >= data.length) {
+            if (block + 1 >= offsets.length)
+                return false;
+            load(block + 1);
+        }
+        return true;
+    }
+
+    private void load(int target) throws IOException {
+        if (target == block)
+            return;
+        CompletableFuture<byte[]> future = ahead[target];
+        ahead[target] = null;
+        if (future != null) {
+            try {
+                data = future.join();
+            } catch (RuntimeException e) {
+                throw new IOException("Couldn't decompress block " + target, e.getCause());
+            }
+        } else {
+            data = decompress(target);
+        }
+        //Forget read-ahead that a seek has left behind
+        if (target != block + 1)
+            Arrays.fill(ahead, null);
+        block = target;
+        pos = 0;
+
+        for (int i = target + 1; i <= target + readAhead && i < offsets.length; i++) {
+            if (ahead[i] == null) {
+                int next = i;
+                ahead[i] = CompletableFuture.supplyAsync(() -> {
+                    try {
+                        return decompress(next);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }, ForkJoinPool.commonPool());
+            }
+        }
+    }
+
+    private byte[] decompress(int index) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(8);
+        readFully(header, offsets[index]);
+        int compressed = header.getInt(0);
+        int raw = header.getInt(4);
+        if (compressed < 0 || raw != rawLengths[index] || offsets[index] + 8 + compressed > indexOffset)
+            throw new IOException("Block " + index + " is corrupt");
+        ByteBuffer input = ByteBuffer.allocate(compressed);
+        readFully(input, offsets[index] + 8);
+
+        Inflater inflater = inflaters.get();
+        if (inflater == null) {
+            inflater = new Inflater(true);
+            inflaters.set(inflater);
+        }
+        inflater.reset();
+        inflater.setInput(input.array(), 0, compressed);
+        byte[] output = new byte[raw];
+        try {
+            int done = 0;
+            while (done < raw && !inflater.finished()) {
+                int n = inflater.inflate(output, done, raw - done);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+                    break;
+                done += n;
+            }
+            if (done != raw)
+                throw new IOException("Block " + index + " is truncated");
+        } catch (DataFormatException e) {
+            throw new IOException("Block " + index + " is corrupt", e);
+        }
+        return output;
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        buffer.clear();
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0)
+                throw new EOFException();
+        }
+    }
+}
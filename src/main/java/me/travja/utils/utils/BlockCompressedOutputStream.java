@@ -0,0 +1,188 @@
+package me.travja.utils.utils;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.Deflater;
+
+/**
+ * Writes data as a series of independently deflated blocks, compressing several blocks at once on other threads.<br>
+ * Because each block stands alone, {@link BlockCompressedInputStream} can seek to any position by decompressing
+ * just the block that holds it. An index of the blocks is written when the stream is closed, so the stream
+ * must be closed for the file to be readable.<br>
+ * Format: a header (magic, version, block size), then each block as its compressed length, raw length and
+ * deflated bytes, then the index (offset and raw length of each block) and a trailer pointing at the index.
+ */
+public class BlockCompressedOutputStream extends OutputStream {
+
+    //0x89 can't start a text file in UTF-8 or ASCII, so plain text is never mistaken for a block compressed file
+    static final int MAGIC = 0x89424C4B; //\x89BLK
+    static final int VERSION = 1;
+    public static final int DEFAULT_BLOCK_SIZE = 1024 * 1024;
+
+    private static final ThreadLocal<Deflater> deflaters = new ThreadLocal<>();
+
+    private final DataOutputStream out;
+    private final int blockSize;
+    private final int level;
+    private final Executor executor;
+    private final int maxPending = Math.max(2, Runtime.getRuntime().availableProcessors() * 2);
+    private final ArrayDeque<CompletableFuture<byte[]>> pending = new ArrayDeque<>();
+    private final ArrayDeque<Integer> pendingRaw = new ArrayDeque<>();
+
+    private ByteBuffer current;
+    private long position = 0;
+    private long[] offsets = new long[16];
+    private int[] rawLengths = new int[16];
+    private int blocks = 0;
+    private boolean closed = false;
+
+    public BlockCompressedOutputStream(OutputStream out) throws IOException {
+        this(out, DEFAULT_BLOCK_SIZE, Deflater.DEFAULT_COMPRESSION, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param out       Where the compressed data is written. Closed when this stream is closed
+     * @param blockSize How many uncompressed bytes go in each block. Larger compresses better, smaller seeks faster
+     * @param level     The {@link Deflater} compression level
+     * @param executor  Where blocks are compressed
+     * @throws IOException if the header can't be written
+     */
+    public BlockCompressedOutputStream(OutputStream out, int blockSize, int level, Executor executor) throws IOException {
+        this.out = new DataOutputStream(new BufferedOutputStream(out, 64 * 1024));
+        this.blockSize = Math.max(1024, blockSize);
+        this.level = level;
+        this.executor = executor;
+        this.out.writeInt(MAGIC);
+        this.out.writeInt(VERSION);
+        this.out.writeInt(this.blockSize);
+        position = 12;
+        current = BufferPool.heap().acquire(this.blockSize);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        ensureOpen();
+        current.put((byte) b);
+        if (current.position() == blockSize)
+            submit();
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        ensureOpen();
+        while (len > 0) {
+            int n = Math.min(len, blockSize - current.position());
+            current.put(b, off, n);
+            off += n;
+            len -= n;
+            if (current.position() == blockSize)
+                submit();
+        }
+    }
+
+    /**
+     * Writes out every block that has finished compressing. Data in the current, partly filled block stays
+     * buffered so blocks keep their full size.
+     */
+    @Override
+    public void flush() throws IOException {
+        ensureOpen();
+        drain(0);
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed)
+            return;
+        try {
+            if (current.position() > 0)
+                submit();
+            drain(0);
+
+            long indexOffset = position;
+            for (int i = 0; i < blocks; i++) {
+                out.writeLong(offsets[i]);
+                out.writeInt(rawLengths[i]);
+            }
+            out.writeLong(indexOffset);
+            out.writeInt(blocks);
+            out.writeInt(MAGIC);
+        } finally {
+            closed = true;
+            BufferPool.heap().release(current);
+            out.close();
+        }
+    }
+
+    private void submit() throws IOException {
+        ByteBuffer block = current;
+        int raw = block.position();
+        pending.add(CompletableFuture.supplyAsync(() -> {
+            try {
+                return compress(block.array(), block.arrayOffset(), raw, level);
+            } finally {
+                BufferPool.heap().release(block);
+            }
+        }, executor));
+        pendingRaw.add(raw);
+        current = BufferPool.heap().acquire(blockSize);
+        drain(maxPending);
+    }
+
+    /**
+     * Writes finished blocks, in order, until no more than 'keep' are still pending.
+     */
+    private void drain(int keep) throws IOException {
+        while (pending.size() > keep) {
+            byte[] data;
+            try {
+                data = pending.poll().join();
+            } catch (RuntimeException e) {
+                throw new IOException("Couldn't compress block", e);
+            }
+            int raw = pendingRaw.poll();
+            if (blocks == offsets.length) {
+                offsets = Arrays.copyOf(offsets, blocks * 2);
+                rawLengths = Arrays.copyOf(rawLengths, blocks * 2);
+            }
+            offsets[blocks] = position;
+            rawLengths[blocks] = raw;
+            blocks++;
+            out.writeInt(data.length);
+            out.writeInt(raw);
+            out.write(data);
+            position += 8 + data.length;
+        }
+    }
+
+    private static byte[] compress(byte[] data, int off, int len, int level) {
+        Deflater deflater = deflaters.get();
+        if (deflater == null) {
+            deflater = new Deflater(level, true);
+            deflaters.set(deflater);
+        }
+        deflater.reset();
+        deflater.setLevel(level);
+        deflater.setInput(data, off, len);
+        deflater.finish();
+        byte[] output = new byte[len / 2 + 64];
+        int size = 0;
+        while (!deflater.finished()) {
+            if (size == output.length)
+                output = Arrays.copyOf(output, output.length * 2);
+            size += deflater.deflate(output, size, output.length - size);
+        }
+        return Arrays.copyOf(output, size);
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed)
+            throw new IOException("Stream closed");
+    }
+}
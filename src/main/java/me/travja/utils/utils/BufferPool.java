@@ -0,0 +1,178 @@
+package me.travja.utils.utils;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A thread-safe pool of reusable {@link ByteBuffer}s, so bulk I/O doesn't allocate a new buffer for every file.<br>
+ * Buffers come in power-of-two size classes from {@link #MIN_SIZE} to {@link #MAX_SIZE}. Each thread keeps a few
+ * buffers of each class to itself and overflows into a shared queue. Requests larger than {@link #MAX_SIZE} are
+ * allocated fresh and dropped on release.<br>
+ * A buffer must not be used after it is released, and must only be released once.
+ */
+public class BufferPool {
+
+    public static final int MIN_SIZE = 4 * 1024;
+    public static final int MAX_SIZE = 1024 * 1024;
+
+    private static final int MIN_SHIFT = Integer.numberOfTrailingZeros(MIN_SIZE);
+    private static final int CLASSES = Integer.numberOfTrailingZeros(MAX_SIZE) - MIN_SHIFT + 1;
+    private static final int THREAD_CACHE_SIZE = 4;
+    private static final int SHARED_CACHE_SIZE = 32;
+
+    private static final BufferPool heap = new BufferPool(false);
+    private static final BufferPool direct = new BufferPool(true);
+
+    private final boolean isDirect;
+    private final ConcurrentLinkedQueue<ByteBuffer>[] shared;
+    private final AtomicInteger[] sharedCounts;
+    private final ThreadLocal<ArrayDeque<ByteBuffer>[]> local;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder outstanding = new LongAdder();
+
+    @SuppressWarnings("unchecked")
+    public BufferPool(boolean direct) {
+        this.isDirect = direct;
+        shared = new ConcurrentLinkedQueue[CLASSES];
+        sharedCounts = new AtomicInteger[CLASSES];
+        for (int i = 0; i < CLASSES; i++) {
+            shared[i] = new ConcurrentLinkedQueue<>();
+            sharedCounts[i] = new AtomicInteger();
+        }
+        local = ThreadLocal.withInitial(() -> {
+            ArrayDeque<ByteBuffer>[] caches = new ArrayDeque[CLASSES];
+            for (int i = 0; i < CLASSES; i++)
+                caches[i] = new ArrayDeque<>(THREAD_CACHE_SIZE);
+            return caches;
+        });
+    }
+
+    /**
+     * Gets the shared pool of heap buffers. Best when the data will be decoded or inspected as an array.
+     *
+     * @return The shared heap {@link BufferPool}
+     */
+    public static BufferPool heap() {
+        return heap;
+    }
+
+    /**
+     * Gets the shared pool of direct buffers. Best when the data only passes between channels.
+     *
+     * @return The shared direct {@link BufferPool}
+     */
+    public static BufferPool direct() {
+        return direct;
+    }
+
+    public boolean isDirect() {
+        return isDirect;
+    }
+
+    /**
+     * Gets a cleared buffer with a capacity of at least 'size' bytes.
+     *
+     * @param size The minimum capacity needed
+     * @return A {@link ByteBuffer}, which should be handed back with {@link #release(ByteBuffer)}
+     */
+    public ByteBuffer acquire(int size) {
+        outstanding.increment();
+        int index = classOf(size);
+        if (index < 0) {
+            misses.increment();
+            return allocate(size);
+        }
+
+        ByteBuffer buffer = local.get()[index].pollFirst();
+        if (buffer == null) {
+            buffer = shared[index].poll();
+            if (buffer != null)
+                sharedCounts[index].decrementAndGet();
+        }
+        if (buffer == null) {
+            misses.increment();
+            return allocate(MIN_SIZE << index);
+        }
+
+        hits.increment();
+        buffer.clear();
+        return buffer;
+    }
+
+    /**
+     * Hands a buffer back to the pool so it can be reused.
+     *
+     * @param buffer The buffer, as returned by {@link #acquire(int)}. Null is ignored
+     */
+    public void release(ByteBuffer buffer) {
+        if (buffer == null)
+            return;
+        outstanding.decrement();
+        int capacity = buffer.capacity();
+        if (buffer.isDirect() != isDirect || Integer.bitCount(capacity) != 1 || capacity < MIN_SIZE || capacity > MAX_SIZE)
+            return;
+
+        int index = Integer.numberOfTrailingZeros(capacity) - MIN_SHIFT;
+        ArrayDeque<ByteBuffer> cache = local.get()[index];
+        if (cache.size() < THREAD_CACHE_SIZE) {
+            cache.offerFirst(buffer);
+        } else if (sharedCounts[index].incrementAndGet() <= SHARED_CACHE_SIZE) {
+            shared[index].offer(buffer);
+        } else {
+            sharedCounts[index].decrementAndGet();
+        }
+    }
+
+    /**
+     * @return How many times a buffer was handed out from the pool
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return How many times a new buffer had to be allocated
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return The fraction of requests served from the pool, between 0 and 1
+     */
+    public double getHitRate() {
+        long h = getHits();
+        long total = h + getMisses();
+        return total == 0 ? 0 : (double) h / total;
+    }
+
+    /**
+     * @return How many buffers have been acquired and not yet released
+     */
+    public long getOutstanding() {
+        return outstanding.sum();
+    }
+
+    private ByteBuffer allocate(int size) {
+        return isDirect ? ByteBuffer.allocateDirect(size) : ByteBuffer.allocate(size);
+    }
+
+    private static int classOf(int size) {
+        if (size > MAX_SIZE)
+            return -1;
+        if (size <= MIN_SIZE)
+            return 0;
+        return 32 - Integer.numberOfLeadingZeros(size - 1) - MIN_SHIFT;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("BufferPool[direct=%s, hits=%d, misses=%d, outstanding=%d]",
+                isDirect, getHits(), getMisses(), getOutstanding());
+    }
+}
@@ -0,0 +1,518 @@
+package me.travja.utils.utils;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+
+/**
+ * Reads CSV, TSV and other delimited files one record at a time.<br>
+ * Fields may be wrapped in double quotes to hold delimiters, line breaks or quotes (written as two double quotes).
+ * Fields are exposed as {@link CharSequence} views over a buffer that is reused for every record, and the typed
+ * getters parse straight from that buffer, so reading a file doesn't create a String per field.
+ * Views are only valid until the next call to {@link #next()}.<br>
+ * Blank lines are skipped.
+ */
+public class DelimitedReader implements Closeable {
+
+    private static final int BUFFER = 16 * 1024;
+    private static final long MIN_CHUNK = 4 * 1024 * 1024;
+    private static final double[] POWERS = {1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+
+    private final Reader in;
+    private final char delimiter;
+    private final char[] input = new char[BUFFER];
+    private int inPos = 0;
+    private int inLen = 0;
+
+    private char[] record = new char[256];
+    private int recordLen = 0;
+    private int[] starts = new int[16];
+    private int[] ends = new int[16];
+    private Field[] views = new Field[16];
+    private int fields = 0;
+    private long recordNumber = 0;
+
+    public DelimitedReader(Reader in, char delimiter) {
+        this.in = in;
+        this.delimiter = delimiter;
+    }
+
+    /**
+     * Opens a file for reading, decoding it with the platform charset.
+     *
+     * @param file      The file to read
+     * @param delimiter The character between fields, such as ',' or '\t'
+     * @return A new {@link DelimitedReader}, or null if the file couldn't be opened
+     */
+    public static DelimitedReader open(File file, char delimiter) {
+        try {
+            return new DelimitedReader(new InputStreamReader(new FileInputStream(file), Charset.defaultCharset()), delimiter);
+        } catch (FileNotFoundException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Reads every record in the file, turning each one into a value with the mapper.
+     *
+     * @param file      The file to read
+     * @param delimiter The character between fields
+     * @param header    Should the first record be skipped?
+     * @param mapper    Turns the current record into a value. Must not keep hold of the reader's views
+     * @param <T>       The type of value produced
+     * @return The mapped records in file order, or null if the file couldn't be read
+     */
+    public static <T> List<T> readAll(File file, char delimiter, boolean header, Function<DelimitedReader, T> mapper) {
+        DelimitedReader reader = open(file, delimiter);
+        if (reader == null)
+            return null;
+        try {
+            return reader.readRemaining(header, mapper);
+        } catch (UncheckedIOException e) {
+            e.printStackTrace();
+            return null;
+        } finally {
+            closeQuietly(reader);
+        }
+    }
+
+    /**
+     * Like {@link #readAll(File, char, boolean, Function)}, but splits the file into chunks and parses them on
+     * multiple threads. Chunks are cut at line breaks that are outside quotes, found by tracking how many quotes
+     * come before each one, so quoted fields with line breaks are never split.<br>
+     * The mapper is called from several threads at once.
+     *
+     * @param file      The file to read
+     * @param delimiter The character between fields
+     * @param header    Should the first record be skipped?
+     * @param mapper    Turns the current record into a value. Must not keep hold of the reader's views
+     * @param <T>       The type of value produced
+     * @return The mapped records in file order, or null if the file couldn't be read
+     */
+    public static <T> List<T> readAllParallel(File file, char delimiter, boolean header, Function<DelimitedReader, T> mapper) {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long length = channel.size();
+            int cores = Runtime.getRuntime().availableProcessors();
+            long chunkSize = Math.max(MIN_CHUNK, length / (cores * 4L) + 1);
+            int chunks = (int) Math.max(1, (length + chunkSize - 1) / chunkSize);
+
+            //Find where each chunk's first safe record boundary would be for either quote parity
+            QuoteScan[] scans = new QuoteScan[chunks];
+            IntStream.range(0, chunks).parallel().forEach(i ->
+                    scans[i] = QuoteScan.scan(channel, i * chunkSize, Math.min(length, (i + 1) * chunkSize)));
+
+            long[] bounds = new long[chunks + 1];
+            bounds[chunks] = length;
+            boolean inQuotes = false;
+            for (int i = 0; i < chunks; i++) {
+                if (scans[i].error != null)
+                    throw scans[i].error;
+                if (i > 0) {
+                    long boundary = inQuotes ? scans[i].firstOdd : scans[i].firstEven;
+                    //No safe boundary in this chunk means no record starts in it. Leave the previous range
+                    //empty so this one starts where that one would have, at a real record boundary
+                    bounds[i] = boundary < 0 ? bounds[i - 1] : Math.max(boundary, bounds[i - 1]);
+                }
+                if (scans[i].quotes % 2 == 1)
+                    inQuotes = !inQuotes;
+            }
+
+            List<List<T>> parts = new ArrayList<>();
+            for (int i = 0; i < chunks; i++)
+                parts.add(null);
+            IntStream.range(0, chunks).parallel().forEach(i -> {
+                InputStream stream = new RangeInputStream(channel, bounds[i], bounds[i + 1]);
+                DelimitedReader reader = new DelimitedReader(new InputStreamReader(stream, Charset.defaultCharset()), delimiter);
+                //The header belongs to whichever range actually starts the file
+                parts.set(i, reader.readRemaining(header && bounds[i] == 0 && bounds[i + 1] > 0, mapper));
+            });
+
+            List<T> result = new ArrayList<>();
+            for (List<T> part : parts)
+                result.addAll(part);
+            return result;
+        } catch (IOException | UncheckedIOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    private <T> List<T> readRemaining(boolean header, Function<DelimitedReader, T> mapper) {
+        List<T> result = new ArrayList<>();
+        if (header)
+            next();
+        while (next())
+            result.add(mapper.apply(this));
+        return result;
+    }
+
+    /**
+     * Moves on to the next record.
+     *
+     * @return false once there are no more records
+     * @throws UncheckedIOException if the underlying reader fails
+     */
+    public boolean next() {
+        fields = 0;
+        recordLen = 0;
+        int c = read();
+        while (c == '\n' || c == '\r')
+            c = read();
+        if (c == -1)
+            return false;
+
+        while (true) {
+            int start = recordLen;
+            if (c == '"') {
+                while (true) {
+                    c = read();
+                    if (c == -1)
+                        break;
+                    if (c == '"') {
+                        c = read();
+                        if (c != '"')
+                            break;
+                    }
+                    append((char) c);
+                }
+            }
+            //Unquoted text, or anything left over after a closing quote
+            while (c != -1 && c != delimiter && c != '\n') {
+                if (c == '\r' && peek() == '\n') {
+                    c = read();
+                    break;
+                }
+                append((char) c);
+                c = read();
+            }
+            endField(start);
+            if (c != delimiter)
+                break;
+            c = read();
+        }
+        recordNumber++;
+        return true;
+    }
+
+    /**
+     * @return How many fields the current record has
+     */
+    public int size() {
+        return fields;
+    }
+
+    /**
+     * @return How many records have been read so far, including the current one
+     */
+    public long getRecordNumber() {
+        return recordNumber;
+    }
+
+    /**
+     * Gets a view of a field in the current record. The view is reused and changes when {@link #next()} is called.
+     *
+     * @param index The field, starting from 0
+     * @return A {@link CharSequence} over the field's text
+     */
+    public CharSequence get(int index) {
+        check(index);
+        if (views[index] == null)
+            views[index] = new Field(index);
+        return views[index];
+    }
+
+    /**
+     * Gets a field as a new String, which stays valid after the reader moves on.
+     *
+     * @param index The field, starting from 0
+     * @return The field's text
+     */
+    public String getString(int index) {
+        check(index);
+        return new String(record, starts[index], ends[index] - starts[index]);
+    }
+
+    public boolean isEmpty(int index) {
+        check(index);
+        return starts[index] == ends[index];
+    }
+
+    public int getInt(int index) {
+        long value = getLong(index);
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE)
+            throw new NumberFormatException("Value out of range for int: " + getString(index));
+        return (int) value;
+    }
+
+    public long getLong(int index) {
+        check(index);
+        int i = trimStart(index);
+        int end = trimEnd(index);
+        if (i >= end)
+            throw new NumberFormatException("Empty field " + index);
+        boolean negative = record[i] == '-';
+        if (negative || record[i] == '+')
+            i++;
+        if (i >= end)
+            throw new NumberFormatException("Not a number: " + getString(index));
+        long value = 0;
+        for (; i < end; i++) {
+            int digit = record[i] - '0';
+            if (digit < 0 || digit > 9)
+                throw new NumberFormatException("Not a number: " + getString(index));
+            //Accumulate negatively so Long.MIN_VALUE fits
+            if (value < (Long.MIN_VALUE + digit) / 10)
+                throw new NumberFormatException("Value out of range for long: " + getString(index));
+            value = value * 10 - digit;
+        }
+        if (!negative) {
+            if (value == Long.MIN_VALUE)
+                throw new NumberFormatException("Value out of range for long: " + getString(index));
+            value = -value;
+        }
+        return value;
+    }
+
+    /**
+     * Parses a field as a double. Plain decimals with up to 15 significant digits are parsed in place; anything
+     * else falls back to {@link Double#parseDouble(String)}.
+     *
+     * @param index The field, starting from 0
+     * @return The parsed value
+     */
+    public double getDouble(int index) {
+        check(index);
+        int i = trimStart(index);
+        int end = trimEnd(index);
+        int pos = i;
+        boolean negative = false;
+        if (pos < end && (record[pos] == '-' || record[pos] == '+'))
+            negative = record[pos++] == '-';
+        long mantissa = 0;
+        int digits = 0;
+        int scale = 0;
+        boolean dot = false;
+        boolean sawDigit = false;
+        boolean simple = pos < end;
+        for (; pos < end && simple; pos++) {
+            char c = record[pos];
+            if (c == '.' && !dot) {
+                dot = true;
+            } else if (c >= '0' && c <= '9') {
+                sawDigit = true;
+                if (mantissa != 0 || c != '0')
+                    digits++;
+                mantissa = mantissa * 10 + (c - '0');
+                if (dot)
+                    scale++;
+            } else {
+                simple = false;
+            }
+        }
+        //Values that fit exactly in a double divide by an exact power of ten, which rounds correctly
+        if (simple && sawDigit && digits <= 15 && scale < POWERS.length) {
+            double value = mantissa / POWERS[scale];
+            return negative ? -value : value;
+        }
+        return Double.parseDouble(new String(record, i, end - i));
+    }
+
+    public boolean getBoolean(int index) {
+        CharSequence field = get(index);
+        return field.length() == 4
+                && Character.toLowerCase(field.charAt(0)) == 't'
+                && Character.toLowerCase(field.charAt(1)) == 'r'
+                && Character.toLowerCase(field.charAt(2)) == 'u'
+                && Character.toLowerCase(field.charAt(3)) == 'e';
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private void check(int index) {
+        if (index < 0 || index >= fields)
+            throw new IndexOutOfBoundsException("Field " + index + " of " + fields);
+    }
+
+    private int trimStart(int index) {
+        int i = starts[index];
+        while (i < ends[index] && Character.isWhitespace(record[i]))
+            i++;
+        return i;
+    }
+
+    private int trimEnd(int index) {
+        int i = ends[index];
+        while (i > starts[index] && Character.isWhitespace(record[i - 1]))
+            i--;
+        return i;
+    }
+
+    private void append(char c) {
+        if (recordLen == record.length)
+            record = Arrays.copyOf(record, recordLen * 2);
+        record[recordLen++] = c;
+    }
+
+    private void endField(int start) {
+        if (fields == starts.length) {
+            starts = Arrays.copyOf(starts, fields * 2);
+            ends = Arrays.copyOf(ends, fields * 2);
+            views = Arrays.copyOf(views, fields * 2);
+        }
+        starts[fields] = start;
+        ends[fields] = recordLen;
+        fields++;
+    }
+
+    private int read() {
+        if (inPos == inLen && !fill())
+            return -1;
+        return input[inPos++];
+    }
+
+    private int peek() {
+        if (inPos == inLen && !fill())
+            return -1;
+        return input[inPos];
+    }
+
+    private boolean fill() {
+        try {
+            int read;
+            do {
+                read = in.read(input, 0, input.length);
+            } while (read == 0);
+            inPos = 0;
+            inLen = Math.max(read, 0);
+            return read > 0;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private class Field implements CharSequence {
+        private final int index;
+
+        Field(int index) {
+            this.index = index;
+        }
+
+        @Override
+        public int length() {
+            return ends[index] - starts[index];
+        }
+
+        @Override
+        public char charAt(int i) {
+            if (i < 0 || i >= length())
+                throw new IndexOutOfBoundsException(String.valueOf(i));
+            return record[starts[index] + i];
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return CharBuffer.wrap(record, starts[index], length()).subSequence(start, end);
+        }
+
+        @Override
+        public String toString() {
+            return getString(index);
+        }
+    }
+
+    /**
+     * Counts the quotes in a byte range and notes the first line break after an even and an odd number of them.
+     */
+    private static class QuoteScan {
+        long quotes = 0;
+        long firstEven = -1;
+        long firstOdd = -1;
+        IOException error;
+
+        static QuoteScan scan(FileChannel channel, long start, long end) {
+            QuoteScan scan = new QuoteScan();
+            ByteBuffer buffer = BufferPool.heap().acquire(BUFFER * 4);
+            try {
+                byte[] bytes = buffer.array();
+                int base = buffer.arrayOffset();
+                long position = start;
+                while (position < end) {
+                    buffer.clear();
+                    buffer.limit((int) Math.min(buffer.capacity(), end - position));
+                    int read = channel.read(buffer, position);
+                    if (read <= 0)
+                        break;
+                    for (int i = 0; i < read; i++) {
+                        byte b = bytes[base + i];
+                        if (b == '"') {
+                            scan.quotes++;
+                        } else if (b == '\n') {
+                            if (scan.quotes % 2 == 0 && scan.firstEven < 0)
+                                scan.firstEven = position + i + 1;
+                            else if (scan.quotes % 2 == 1 && scan.firstOdd < 0)
+                                scan.firstOdd = position + i + 1;
+                        }
+                    }
+                    position += read;
+                }
+            } catch (IOException e) {
+                scan.error = e;
+            } finally {
+                BufferPool.heap().release(buffer);
+            }
+            return scan;
+        }
+    }
+
+    /**
+     * Streams a byte range of a channel using positional reads, so several can share one channel.
+     */
+    private static class RangeInputStream extends InputStream {
+        private final FileChannel channel;
+        private long position;
+        private final long end;
+
+        RangeInputStream(FileChannel channel, long start, long end) {
+            this.channel = channel;
+            this.position = start;
+            this.end = end;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) < 0 ? -1 : one[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (position >= end)
+                return -1;
+            int read = channel.read(ByteBuffer.wrap(b, off, (int) Math.min(len, end - position)), position);
+            if (read > 0)
+                position += read;
+            return read;
+        }
+    }
+}
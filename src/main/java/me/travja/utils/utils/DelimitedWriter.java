@@ -0,0 +1,197 @@
+package me.travja.utils.utils;
+
+import java.io.*;
+import java.nio.charset.Charset;
+
+/**
+ * Writes CSV, TSV and other delimited files, the counterpart to {@link DelimitedReader}.<br>
+ * Fields are written into an internal buffer and only quoted when they contain the delimiter, a quote or a line break.
+ * Numbers are written without going through a String.
+ */
+public class DelimitedWriter implements Closeable, Flushable {
+
+    private static final int BUFFER = 16 * 1024;
+
+    private final Writer out;
+    private final char delimiter;
+    private final char[] buffer = new char[BUFFER];
+    private final char[] digits = new char[20];
+    private final StringBuilder scratch = new StringBuilder(32);
+    private int length = 0;
+    private boolean firstField = true;
+    private boolean emptyFirstField = false;
+
+    public DelimitedWriter(Writer out, char delimiter) {
+        this.out = out;
+        this.delimiter = delimiter;
+    }
+
+    /**
+     * Opens a file for writing, replacing its contents and encoding with the platform charset.
+     *
+     * @param file      The file to write
+     * @param delimiter The character between fields, such as ',' or '\t'
+     * @return A new {@link DelimitedWriter}, or null if the file couldn't be opened
+     */
+    public static DelimitedWriter open(File file, char delimiter) {
+        try {
+            return new DelimitedWriter(new OutputStreamWriter(new FileOutputStream(file), Charset.defaultCharset()), delimiter);
+        } catch (FileNotFoundException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Adds a text field to the current record, quoting it if needed.
+     *
+     * @param value The text to write. Null is written as an empty field
+     * @return The current DelimitedWriter
+     * @throws IOException if the underlying writer fails
+     */
+    public DelimitedWriter field(CharSequence value) throws IOException {
+        boolean first = firstField;
+        separate();
+        int len = value == null ? 0 : value.length();
+        if (len == 0) {
+            //If this turns out to be the only field, endRecord has to quote it or the record reads as a blank line
+            emptyFirstField = first;
+            return this;
+        }
+        boolean quote = false;
+        for (int i = 0; i < len && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == delimiter || c == '"' || c == '\n' || c == '\r';
+        }
+        if (quote)
+            put('"');
+        for (int i = 0; i < len; i++) {
+            char c = value.charAt(i);
+            if (c == '"')
+                put('"');
+            put(c);
+        }
+        if (quote)
+            put('"');
+        return this;
+    }
+
+    public DelimitedWriter field(long value) throws IOException {
+        separate();
+        if (value == Long.MIN_VALUE) {
+            //Can't be negated, so let the JDK handle it
+            scratch.setLength(0);
+            scratch.append(value);
+            return raw(scratch);
+        }
+        if (value < 0) {
+            put('-');
+            value = -value;
+        }
+        int i = digits.length;
+        do {
+            digits[--i] = (char) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+        for (; i < digits.length; i++)
+            put(digits[i]);
+        return this;
+    }
+
+    public DelimitedWriter field(int value) throws IOException {
+        return field((long) value);
+    }
+
+    public DelimitedWriter field(double value) throws IOException {
+        separate();
+        scratch.setLength(0);
+        scratch.append(value);
+        return raw(scratch);
+    }
+
+    public DelimitedWriter field(boolean value) throws IOException {
+        separate();
+        return raw(value ? "true" : "false");
+    }
+
+    /**
+     * Writes a whole record, using the matching field method for numbers and booleans and toString for anything else.
+     *
+     * @param values The fields of the record
+     * @return The current DelimitedWriter
+     * @throws IOException if the underlying writer fails
+     */
+    public DelimitedWriter writeRecord(Object... values) throws IOException {
+        for (Object value : values) {
+            if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte)
+                field(((Number) value).longValue());
+            else if (value instanceof Double || value instanceof Float)
+                field(((Number) value).doubleValue());
+            else if (value instanceof Boolean)
+                field((boolean) (Boolean) value);
+            else if (value instanceof CharSequence)
+                field((CharSequence) value);
+            else
+                field(value == null ? null : value.toString());
+        }
+        return endRecord();
+    }
+
+    /**
+     * Ends the current record and starts a new one.
+     *
+     * @return The current DelimitedWriter
+     * @throws IOException if the underlying writer fails
+     */
+    public DelimitedWriter endRecord() throws IOException {
+        if (emptyFirstField) {
+            put('"');
+            put('"');
+            emptyFirstField = false;
+        }
+        put('\n');
+        firstField = true;
+        return this;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        drain();
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            drain();
+        } finally {
+            out.close();
+        }
+    }
+
+    private void separate() throws IOException {
+        emptyFirstField = false;
+        if (!firstField)
+            put(delimiter);
+        firstField = false;
+    }
+
+    private DelimitedWriter raw(CharSequence text) throws IOException {
+        for (int i = 0; i < text.length(); i++)
+            put(text.charAt(i));
+        return this;
+    }
+
+    private void put(char c) throws IOException {
+        if (length == buffer.length)
+            drain();
+        buffer[length++] = c;
+    }
+
+    private void drain() throws IOException {
+        if (length > 0) {
+            out.write(buffer, 0, length);
+            length = 0;
+        }
+    }
+}
@@ -0,0 +1,382 @@
+package me.travja.utils.utils;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+
+/**
+ * Sorts the lines of a file that is too large to fit in memory.<br>
+ * The file is read in runs that fit within {@link #getMemory()}. Each run is sorted on every core while the
+ * next one is being read, then written to a temporary file. The runs are then merged into the output, reading
+ * all of them at once. The sort is stable, so lines that compare equal keep their original order.<br>
+ * Lines are compared as Strings by default. Use {@link #setKey(Function)} to sort on part of a line, such as a
+ * column of a delimited file. Keys are extracted once per line per pass rather than on every comparison.
+ */
+public class ExternalSort {
+
+    public static final long DEFAULT_MEMORY = 64 * 1024 * 1024;
+    public static final int DEFAULT_FAN_IN = 128;
+
+    private static final int READ_BUFFER = 64 * 1024;
+    private static final int WRITE_BUFFER = 1024 * 1024;
+    //Rough size of a String and its entry in a run, on top of the characters themselves
+    private static final int LINE_OVERHEAD = 64;
+
+    private long memory = DEFAULT_MEMORY;
+    private int fanIn = DEFAULT_FAN_IN;
+    private Charset charset = Charset.defaultCharset();
+    private File tempDirectory = null;
+    private Function<String, ?> key = line -> line;
+    private Comparator<Object> order = naturalOrder();
+
+    /**
+     * Sets roughly how much memory the lines of a run may take up. Two runs are held at once, one being read
+     * while the other is sorted. 64MB by default.
+     *
+     * @param bytes The memory budget in bytes
+     * @return The current ExternalSort
+     */
+    public ExternalSort setMemory(long bytes) {
+        this.memory = Math.max(1024 * 1024, bytes);
+        return this;
+    }
+
+    public long getMemory() {
+        return memory;
+    }
+
+    /**
+     * Sets how many runs are merged at once. If there are more, they are merged in several passes.
+     * 128 by default.
+     *
+     * @param fanIn The number of files open at once while merging
+     * @return The current ExternalSort
+     */
+    public ExternalSort setFanIn(int fanIn) {
+        this.fanIn = Math.max(2, fanIn);
+        return this;
+    }
+
+    /**
+     * Sets the charset used to read the input and write the output. The system default by default.
+     *
+     * @param charset The charset of the file
+     * @return The current ExternalSort
+     */
+    public ExternalSort setCharset(Charset charset) {
+        this.charset = charset;
+        return this;
+    }
+
+    /**
+     * Sets where runs are written. Null, the default, uses the system temp directory. Putting them on a
+     * different disk to the input and output can speed up the sort.
+     *
+     * @param directory The directory for temporary files
+     * @return The current ExternalSort
+     */
+    public ExternalSort setTempDirectory(File directory) {
+        this.tempDirectory = directory;
+        return this;
+    }
+
+    /**
+     * Sorts whole lines with the given comparator.
+     *
+     * @param comparator How lines should be ordered
+     * @return The current ExternalSort
+     */
+    @SuppressWarnings("unchecked")
+    public ExternalSort setComparator(Comparator<? super String> comparator) {
+        this.key = line -> line;
+        this.order = (Comparator<Object>) comparator;
+        return this;
+    }
+
+    /**
+     * Sorts lines by a key taken from each line, in the key's natural order.
+     *
+     * @param key Extracts the sort key from a line
+     * @return The current ExternalSort
+     */
+    public <K extends Comparable<? super K>> ExternalSort setKey(Function<String, K> key) {
+        return setKey(key, Comparator.<K>naturalOrder());
+    }
+
+    /**
+     * Sorts lines by a key taken from each line.
+     *
+     * @param key        Extracts the sort key from a line
+     * @param comparator How keys should be ordered
+     * @return The current ExternalSort
+     */
+    @SuppressWarnings("unchecked")
+    public <K> ExternalSort setKey(Function<String, K> key, Comparator<? super K> comparator) {
+        this.key = key;
+        this.order = (Comparator<Object>) comparator;
+        return this;
+    }
+
+    /**
+     * Sorts the lines of 'source' into 'dest'. dest is replaced if it exists, and may be the same file as source.
+     *
+     * @param source The file to sort
+     * @param dest   Where the sorted lines should be written
+     * @return Whether the sort succeeded
+     */
+    public boolean sort(File source, File dest) {
+        List<File> runs = new ArrayList<>();
+        try {
+            if (!split(source, dest, runs))
+                return true; //Everything fit in one run and has already been written
+            merge(runs, dest);
+            return true;
+        } catch (IOException | UncheckedIOException | CompletionException e) {
+            e.printStackTrace();
+            return false;
+        } finally {
+            for (File run : runs)
+                run.delete();
+        }
+    }
+
+    /**
+     * Reads the source into sorted runs.
+     *
+     * @return Whether runs were spilled to disk. If not, the single run was written straight to dest
+     */
+    private boolean split(File source, File dest, List<File> runs) throws IOException {
+        long budget = memory / 2;
+        CompletableFuture<File> spilling = null;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(source), charset), READ_BUFFER)) {
+            while (true) {
+                List<String> lines = new ArrayList<>();
+                long used = 0;
+                String line;
+                while (used < budget && (line = reader.readLine()) != null) {
+                    lines.add(line);
+                    used += LINE_OVERHEAD + 2L * line.length();
+                }
+                boolean last = used < budget;
+
+                if (spilling != null) {
+                    runs.add(spilling.join());
+                    spilling = null;
+                }
+                if (last && runs.isEmpty()) {
+                    write(sortRun(lines), dest);
+                    return false;
+                }
+                if (!lines.isEmpty())
+                    spilling = CompletableFuture.supplyAsync(() -> spill(sortRun(lines)));
+                if (last)
+                    break;
+            }
+        } finally {
+            if (spilling != null)
+                runs.add(spilling.join());
+        }
+        return true;
+    }
+
+    private Item[] sortRun(List<String> lines) {
+        Item[] items = new Item[lines.size()];
+        for (int i = 0; i < items.length; i++) {
+            String line = lines.get(i);
+            items[i] = new Item(key.apply(line), line);
+        }
+        lines.clear();
+        Arrays.parallelSort(items, (a, b) -> order.compare(a.key, b.key));
+        return items;
+    }
+
+    private File spill(Item[] items) {
+        File run = null;
+        try {
+            run = createRun();
+            write(items, run);
+            return run;
+        } catch (IOException e) {
+            if (run != null)
+                run.delete();
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void write(Item[] items, File file) throws IOException {
+        try (LineWriter out = new LineWriter(file, charset)) {
+            for (Item item : items)
+                out.write(item.line);
+        }
+    }
+
+    /**
+     * Merges the runs into dest, first merging groups of them into larger runs if there are too many to
+     * have open at once.
+     */
+    private void merge(List<File> runs, File dest) throws IOException {
+        while (runs.size() > fanIn) {
+            List<List<File>> groups = new ArrayList<>();
+            List<File> merged = new ArrayList<>();
+            try {
+                for (int i = 0; i < runs.size(); i += fanIn) {
+                    groups.add(runs.subList(i, Math.min(runs.size(), i + fanIn)));
+                    merged.add(createRun());
+                }
+                //Each group is independent, so merge them side by side. Groups keep their order so the sort stays stable
+                IntStream.range(0, groups.size()).parallel().forEach(i -> {
+                    try {
+                        mergeInto(groups.get(i), merged.get(i));
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                runs.addAll(merged);
+                throw e.getCause();
+            } catch (IOException e) {
+                runs.addAll(merged);
+                throw e;
+            }
+            for (File run : runs)
+                run.delete();
+            runs.clear();
+            runs.addAll(merged);
+        }
+        mergeInto(runs, dest);
+    }
+
+    private File createRun() throws IOException {
+        return File.createTempFile("sort", ".run", tempDirectory);
+    }
+
+    private void mergeInto(List<File> runs, File dest) throws IOException {
+        PriorityQueue<Source> heap = new PriorityQueue<>(Math.max(1, runs.size()), (a, b) -> {
+            int c = order.compare(a.key, b.key);
+            return c != 0 ? c : Integer.compare(a.index, b.index);
+        });
+        List<Source> sources = new ArrayList<>();
+        try (LineWriter out = new LineWriter(dest, charset)) {
+            for (int i = 0; i < runs.size(); i++) {
+                Source source = new Source(runs.get(i), i);
+                sources.add(source);
+                if (source.advance())
+                    heap.add(source);
+            }
+            while (!heap.isEmpty()) {
+                Source source = heap.poll();
+                out.write(source.line);
+                if (source.advance())
+                    heap.add(source);
+            }
+        } finally {
+            for (Source source : sources)
+                source.reader.close();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Comparator<Object> naturalOrder() {
+        return (a, b) -> ((Comparable<Object>) a).compareTo(b);
+    }
+
+    private static class Item {
+        final Object key;
+        final String line;
+
+        Item(Object key, String line) {
+            this.key = key;
+            this.line = line;
+        }
+    }
+
+    private class Source {
+        final BufferedReader reader;
+        final int index;
+        String line;
+        Object key;
+
+        Source(File file, int index) throws IOException {
+            this.reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), charset), READ_BUFFER);
+            this.index = index;
+        }
+
+        boolean advance() throws IOException {
+            line = reader.readLine();
+            key = line == null ? null : key(line);
+            return line != null;
+        }
+
+        private Object key(String line) {
+            return ExternalSort.this.key.apply(line);
+        }
+    }
+
+    /**
+     * Encodes lines into a pooled buffer and writes it to a channel whenever it fills.
+     */
+    private static class LineWriter implements Closeable {
+        private final FileChannel channel;
+        private final CharsetEncoder encoder;
+        private final ByteBuffer buffer = BufferPool.heap().acquire(WRITE_BUFFER);
+        private final CharBuffer newline = CharBuffer.wrap("\n");
+
+        LineWriter(File file, Charset charset) throws IOException {
+            channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            encoder = charset.newEncoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        }
+
+        void write(String line) throws IOException {
+            encode(CharBuffer.wrap(line));
+            newline.rewind();
+            encode(newline);
+        }
+
+        private void encode(CharBuffer in) throws IOException {
+            while (encoder.encode(in, buffer, false).isOverflow())
+                drain();
+        }
+
+        private void drain() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining())
+                channel.write(buffer);
+            buffer.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                CoderResult result;
+                do {
+                    result = encoder.encode(CharBuffer.allocate(0), buffer, true);
+                    if (result.isOverflow())
+                        drain();
+                } while (result.isOverflow());
+                do {
+                    result = encoder.flush(buffer);
+                    if (result.isOverflow())
+                        drain();
+                } while (result.isOverflow());
+                drain();
+            } finally {
+                BufferPool.heap().release(buffer);
+                channel.close();
+            }
+        }
+    }
+}
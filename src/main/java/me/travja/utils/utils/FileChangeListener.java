@@ -0,0 +1,13 @@
+package me.travja.utils.utils;
+
+import java.io.File;
+
+public interface FileChangeListener {
+    /**
+     * Called when a watched file changes. Bursts of events for the same file are combined into one call.
+     *
+     * @param file   The file that changed
+     * @param change What happened to it
+     */
+    void changed(File file, FileWatcher.Change change);
+}
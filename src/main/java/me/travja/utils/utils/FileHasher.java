@@ -0,0 +1,292 @@
+package me.travja.utils.utils;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Hashes file contents and remembers the results, so unchanged files never need to be read again.<br>
+ * Hashes are cached by path, size and last-modified time, and the cache can be saved to disk between runs.
+ * Whole trees are hashed in parallel, which makes {@link #scan(File)} a cheap way to find what changed since
+ * the last run and {@link #findDuplicates(File)} a cheap way to find copies.
+ */
+public class FileHasher {
+
+    public static final String DEFAULT_ALGORITHM = "SHA-256";
+
+    private static final int MAGIC = 0x46484153; //FHAS
+    private static final int VERSION = 1;
+    private static final int READ_BLOCK = 1024 * 1024;
+
+    private final File cacheFile;
+    private final String algorithm;
+    private final Map<String, Entry> cache = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a hasher using {@link #DEFAULT_ALGORITHM}, loading any cache previously saved to cacheFile.
+     *
+     * @param cacheFile Where the cache is kept. May be null to keep it in memory only
+     */
+    public FileHasher(File cacheFile) {
+        this(cacheFile, DEFAULT_ALGORITHM);
+    }
+
+    /**
+     * Creates a hasher, loading any cache previously saved to cacheFile with the same algorithm.
+     *
+     * @param cacheFile Where the cache is kept. May be null to keep it in memory only
+     * @param algorithm The {@link MessageDigest} algorithm to use, such as "SHA-256" or "MD5"
+     */
+    public FileHasher(File cacheFile, String algorithm) {
+        this.cacheFile = cacheFile;
+        this.algorithm = algorithm;
+        try {
+            MessageDigest.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalArgumentException("Unknown hash algorithm " + algorithm, e);
+        }
+        if (cacheFile != null && cacheFile.exists())
+            load();
+    }
+
+    /**
+     * Gets the hash of a file, reading it only if it has changed since it was last hashed.
+     *
+     * @param file The file to hash
+     * @return The hash as a lowercase hex string, or null if the file couldn't be read
+     */
+    public String hash(File file) {
+        String key = file.getAbsolutePath();
+        long size = file.length();
+        long modified = file.lastModified();
+        Entry entry = cache.get(key);
+        if (entry != null && entry.size == size && entry.modified == modified)
+            return entry.hash;
+
+        String hash = computeHash(file);
+        if (hash != null)
+            cache.put(key, new Entry(size, modified, hash));
+        return hash;
+    }
+
+    /**
+     * Hashes every file under root in parallel.
+     *
+     * @param root The file or directory to hash
+     * @return Each file mapped to its hash. Files that couldn't be read are left out
+     */
+    public Map<File, String> hashAll(File root) {
+        Map<File, String> hashes = new ConcurrentHashMap<>();
+        listFiles(root).parallelStream().forEach(file -> {
+            String hash = hash(file);
+            if (hash != null)
+                hashes.put(file, hash);
+        });
+        return hashes;
+    }
+
+    /**
+     * Compares the files under root with what was cached for them, hashing only files whose size or modified time
+     * differs. The cache is then updated to match, so the next scan reports changes since this one.
+     * Files that were touched but whose contents are the same aren't reported as changed.
+     *
+     * @param root The directory to scan
+     * @return A {@link ChangeSet} of added, changed and removed files
+     */
+    public ChangeSet scan(File root) {
+        String prefix = root.getAbsolutePath();
+        Set<String> before = new HashSet<>();
+        for (String key : cache.keySet())
+            if (key.equals(prefix) || key.startsWith(prefix + File.separator))
+                before.add(key);
+
+        ChangeSet changes = new ChangeSet();
+        List<File> files = listFiles(root);
+        files.parallelStream().forEach(file -> {
+            Entry old = cache.get(file.getAbsolutePath());
+            String hash = hash(file);
+            if (old == null)
+                changes.add(changes.added, file);
+            else if (hash != null && !hash.equals(old.hash))
+                changes.add(changes.changed, file);
+        });
+
+        for (File file : files)
+            before.remove(file.getAbsolutePath());
+        for (String key : before) {
+            cache.remove(key);
+            changes.removed.add(new File(key));
+        }
+        return changes;
+    }
+
+    /**
+     * Finds files under root with identical contents. Only files that share a size with another file are hashed.
+     *
+     * @param root The directory to search
+     * @return Groups of two or more identical files, keyed by their hash
+     */
+    public Map<String, List<File>> findDuplicates(File root) {
+        Map<Long, List<File>> bySize = listFiles(root).stream().collect(Collectors.groupingBy(File::length));
+        Map<String, List<File>> byHash = bySize.values().parallelStream()
+                .filter(group -> group.size() > 1)
+                .flatMap(List::stream)
+                .map(file -> new AbstractMap.SimpleEntry<>(hash(file), file))
+                .filter(pair -> pair.getKey() != null)
+                .collect(Collectors.groupingByConcurrent(Map.Entry::getKey,
+                        Collectors.mapping(Map.Entry::getValue, Collectors.toList())));
+
+        Map<String, List<File>> duplicates = new TreeMap<>();
+        byHash.forEach((hash, group) -> {
+            if (group.size() > 1)
+                duplicates.put(hash, group);
+        });
+        return duplicates;
+    }
+
+    /**
+     * Saves the cache so the next run can skip unchanged files.
+     *
+     * @return Whether the cache was saved. Always false if there is no cache file
+     */
+    public boolean save() {
+        if (cacheFile == null)
+            return false;
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(cacheFile)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeUTF(algorithm);
+            Map<String, Entry> snapshot = new HashMap<>(cache);
+            out.writeInt(snapshot.size());
+            for (Map.Entry<String, Entry> entry : snapshot.entrySet()) {
+                out.writeUTF(entry.getKey());
+                out.writeLong(entry.getValue().size);
+                out.writeLong(entry.getValue().modified);
+                out.writeUTF(entry.getValue().hash);
+            }
+            return true;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Forgets every cached hash.
+     */
+    public void clear() {
+        cache.clear();
+    }
+
+    public String getAlgorithm() {
+        return algorithm;
+    }
+
+    private void load() {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(cacheFile)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION || !in.readUTF().equals(algorithm))
+                return;
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String key = in.readUTF();
+                cache.put(key, new Entry(in.readLong(), in.readLong(), in.readUTF()));
+            }
+        } catch (IOException e) {
+            System.err.println("Couldn't read hash cache " + cacheFile + ". Starting fresh.");
+            cache.clear();
+        }
+    }
+
+    private String computeHash(File file) {
+        ByteBuffer buffer = BufferPool.direct().acquire(READ_BLOCK);
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            MessageDigest digest = MessageDigest.getInstance(algorithm);
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+            return toHex(digest.digest());
+        } catch (IOException | NoSuchAlgorithmException e) {
+            e.printStackTrace();
+            return null;
+        } finally {
+            BufferPool.direct().release(buffer);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        char[] hex = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            hex[i * 2] = Character.forDigit((bytes[i] >> 4) & 0xF, 16);
+            hex[i * 2 + 1] = Character.forDigit(bytes[i] & 0xF, 16);
+        }
+        return new String(hex);
+    }
+
+    private static List<File> listFiles(File root) {
+        if (!root.isDirectory())
+            return root.exists() ? Collections.singletonList(root) : new ArrayList<>();
+        try (Stream<Path> paths = Files.walk(root.toPath())) {
+            return paths.filter(Files::isRegularFile).map(Path::toFile).collect(Collectors.toList());
+        } catch (IOException | UncheckedIOException e) {
+            e.printStackTrace();
+            return new ArrayList<>();
+        }
+    }
+
+    private static class Entry {
+        final long size;
+        final long modified;
+        final String hash;
+
+        Entry(long size, long modified, String hash) {
+            this.size = size;
+            this.modified = modified;
+            this.hash = hash;
+        }
+    }
+
+    /**
+     * The files that were added, changed or removed between two scans.
+     */
+    public static class ChangeSet {
+        private final List<File> added = new ArrayList<>();
+        private final List<File> changed = new ArrayList<>();
+        private final List<File> removed = new ArrayList<>();
+
+        private synchronized void add(List<File> list, File file) {
+            list.add(file);
+        }
+
+        public List<File> getAdded() {
+            return added;
+        }
+
+        public List<File> getChanged() {
+            return changed;
+        }
+
+        public List<File> getRemoved() {
+            return removed;
+        }
+
+        public boolean isEmpty() {
+            return added.isEmpty() && changed.isEmpty() && removed.isEmpty();
+        }
+
+        @Override
+        public String toString() {
+            return "ChangeSet[added=" + added + ", changed=" + changed + ", removed=" + removed + "]";
+        }
+    }
+}
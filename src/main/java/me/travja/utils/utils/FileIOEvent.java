@@ -0,0 +1,43 @@
+package me.travja.utils.utils;
+
+import jdk.jfr.*;
+
+/**
+ * A Flight Recorder event for each file operation timed by {@link IOMetrics}.
+ * Only loaded when metrics are enabled and the JVM has Flight Recorder.
+ */
+@Name("me.travja.utils.FileIO")
+@Label("File I/O")
+@Category("TravjaUtils")
+@Description("A file operation performed through FileUtils")
+class FileIOEvent extends Event {
+
+    @Label("Operation")
+    String operation;
+
+    @Label("Path")
+    String path;
+
+    @Label("Bytes")
+    @DataAmount
+    long bytes;
+
+    @Label("Elapsed")
+    @Timespan(Timespan.NANOSECONDS)
+    long elapsed;
+
+    @Label("Failed")
+    boolean failed;
+
+    static void commit(String operation, String path, long bytes, long elapsed, boolean failed) {
+        FileIOEvent event = new FileIOEvent();
+        if (!event.shouldCommit())
+            return;
+        event.operation = operation;
+        event.path = path;
+        event.bytes = bytes;
+        event.elapsed = elapsed;
+        event.failed = failed;
+        event.commit();
+    }
+}
@@ -0,0 +1,537 @@
+package me.travja.utils.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Searches files and directory trees for text, using every core.<br>
+ * Files are scanned as raw bytes with Boyer-Moore-Horspool, so only the lines that match are ever decoded.
+ * Directories are split into a task per file, and large files into line-aligned chunks, on a {@link ForkJoinPool}.
+ * Regex searches pull the longest required literal out of the expression and use it to skip lines that can't match.<br>
+ * Matches never span lines. Text is encoded with the platform charset, which must be ASCII-compatible.
+ */
+public class FileSearch {
+
+    private static final int CHUNK_SIZE = 1024 * 1024;
+    private static final int BOUNDARY_BLOCK = 64 * 1024;
+
+    private final Charset charset = Charset.defaultCharset();
+    private final byte[] literal;
+    private final int[] shift;
+    private final Pattern pattern;
+    private ForkJoinPool pool = ForkJoinPool.commonPool();
+
+    private FileSearch(String literal, Pattern pattern) {
+        this.pattern = pattern;
+        if (literal == null || literal.isEmpty()) {
+            this.literal = null;
+            this.shift = null;
+        } else {
+            this.literal = literal.getBytes(charset);
+            this.shift = buildShift(this.literal);
+        }
+    }
+
+    /**
+     * Creates a search for the exact text given.
+     *
+     * @param text The text to look for. Must not be empty
+     * @return A new {@link FileSearch}
+     */
+    public static FileSearch literal(String text) {
+        if (text == null || text.isEmpty())
+            throw new IllegalArgumentException("Search text can't be empty.");
+        return new FileSearch(text, null);
+    }
+
+    /**
+     * Creates a search for a regular expression. Each line is matched separately.
+     *
+     * @param regex The expression to look for
+     * @return A new {@link FileSearch}
+     */
+    public static FileSearch regex(String regex) {
+        return regex(Pattern.compile(regex));
+    }
+
+    /**
+     * Creates a search for a compiled regular expression. Each line is matched separately.
+     *
+     * @param pattern The pattern to look for
+     * @return A new {@link FileSearch}
+     */
+    public static FileSearch regex(Pattern pattern) {
+        return new FileSearch(requiredLiteral(pattern), pattern);
+    }
+
+    /**
+     * Sets the pool the search runs on. The common pool is used by default.
+     *
+     * @param pool The {@link ForkJoinPool} to use
+     * @return The current FileSearch
+     */
+    public FileSearch setPool(ForkJoinPool pool) {
+        this.pool = pool;
+        return this;
+    }
+
+    /**
+     * Searches the file, or every file under the directory, handing each match to the listener as soon as it is found.
+     * Calls to the listener never overlap, and matches within a file arrive in order.
+     *
+     * @param root     The file or directory to search
+     * @param listener Receives each {@link Match}
+     * @return How many matches were found
+     */
+    public long search(File root, Consumer<Match> listener) {
+        AtomicLong count = new AtomicLong();
+        Consumer<Match> emit = match -> {
+            synchronized (count) {
+                count.incrementAndGet();
+                listener.accept(match);
+            }
+        };
+        pool.invoke(root.isDirectory() ? new DirectoryTask(root, emit) : new FileTask(root, emit));
+        return count.get();
+    }
+
+    /**
+     * Searches the file, or every file under the directory, and collects the matches.
+     *
+     * @param root The file or directory to search
+     * @return Every {@link Match} found
+     */
+    public List<Match> search(File root) {
+        List<Match> matches = new ArrayList<>();
+        search(root, matches::add);
+        return matches;
+    }
+
+    /**
+     * Finds every file under root that contains a match.
+     *
+     * @param root The file or directory to search
+     * @return The files with at least one match
+     */
+    public List<File> findFiles(File root) {
+        Set<File> files = new LinkedHashSet<>();
+        search(root, match -> files.add(match.getFile()));
+        return new ArrayList<>(files);
+    }
+
+    private class DirectoryTask extends RecursiveAction {
+        private final File dir;
+        private final Consumer<Match> emit;
+
+        DirectoryTask(File dir, Consumer<Match> emit) {
+            this.dir = dir;
+            this.emit = emit;
+        }
+
+        @Override
+        protected void compute() {
+            File[] children = dir.listFiles();
+            if (children == null)
+                return;
+            List<RecursiveAction> tasks = new ArrayList<>();
+            for (File child : children)
+                tasks.add(child.isDirectory() ? new DirectoryTask(child, emit) : new FileTask(child, emit));
+            invokeAll(tasks);
+        }
+    }
+
+    private class FileTask extends RecursiveAction {
+        private final File file;
+        private final Consumer<Match> emit;
+
+        FileTask(File file, Consumer<Match> emit) {
+            this.file = file;
+            this.emit = emit;
+        }
+
+        @Override
+        protected void compute() {
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                List<Long> starts = chunkStarts(channel);
+                long length = channel.size();
+                List<ChunkTask> tasks = new ArrayList<>();
+                for (int i = 0; i < starts.size(); i++) {
+                    long end = i + 1 < starts.size() ? starts.get(i + 1) : length;
+                    tasks.add(new ChunkTask(channel, starts.get(i), end, length));
+                }
+                //Fork everything after the first chunk, then hand results over in order as they complete
+                for (int i = tasks.size() - 1; i > 0; i--)
+                    tasks.get(i).fork();
+                long line = 1;
+                for (int i = 0; i < tasks.size(); i++) {
+                    ChunkResult result = i == 0 ? tasks.get(i).invoke() : tasks.get(i).join();
+                    if (result.error != null)
+                        throw result.error;
+                    for (int m = 0; m < result.size(); m++)
+                        emit.accept(new Match(file, line + result.lines[m], result.offsets[m], result.texts.get(m)));
+                    line += result.newlines;
+                }
+            } catch (IOException e) {
+                System.err.println("Couldn't search " + file);
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private class ChunkTask extends RecursiveTask<ChunkResult> {
+        private final FileChannel channel;
+        private final long start;
+        private final long end;
+        private final long fileLength;
+
+        ChunkTask(FileChannel channel, long start, long end, long fileLength) {
+            this.channel = channel;
+            this.start = start;
+            this.end = end;
+            this.fileLength = fileLength;
+        }
+
+        @Override
+        protected ChunkResult compute() {
+            ChunkResult result = new ChunkResult();
+            //Chunks are at most two CHUNK_SIZEs long, see chunkStarts
+            int length = (int) (end - start);
+            int overlap = (int) Math.min(fileLength - end, pattern == null ? literal.length - 1 : BOUNDARY_BLOCK);
+            ByteBuffer buffer = BufferPool.heap().acquire(length + overlap);
+            try {
+                buffer.limit(length);
+                readFully(buffer);
+                //A chunk that ends mid-line also reads a little of the next one, so matches across the split are found
+                if (overlap > 0 && buffer.position() == length && buffer.get(length - 1) != '\n') {
+                    buffer.limit(length + overlap);
+                    readFully(buffer);
+                }
+                int from = buffer.arrayOffset();
+                scan(buffer.array(), from, from + Math.min(length, buffer.position()), from + buffer.position(), start, result);
+            } catch (IOException e) {
+                result.error = e;
+            } finally {
+                BufferPool.heap().release(buffer);
+            }
+            return result;
+        }
+
+        private void readFully(ByteBuffer buffer) throws IOException {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, start + buffer.position()) < 0)
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Scans for matches that start between from and limit. Bytes up to 'to' may be read to finish a line or match.
+     * 'base' is the file offset of bytes[from].
+     */
+    private void scan(byte[] bytes, int from, int limit, int to, long base, ChunkResult result) {
+        int line = 0;
+        int lineStart = from;
+        int counted = from;
+        int pos = from;
+        while (pos < limit) {
+            int hit = literal == null ? pos : indexOf(bytes, pos, to);
+            if (hit < 0 || hit >= limit)
+                break;
+            //Count the lines we skipped over on the way to the hit
+            for (; counted < hit; counted++) {
+                if (bytes[counted] == '\n') {
+                    line++;
+                    lineStart = counted + 1;
+                }
+            }
+            int lineEnd = hit;
+            while (lineEnd < to && bytes[lineEnd] != '\n')
+                lineEnd++;
+            String text = decodeLine(bytes, lineStart, lineEnd);
+
+            if (pattern == null) {
+                result.add(line, base + (hit - from), text);
+                pos = hit + 1;
+            } else {
+                Matcher matcher = pattern.matcher(text);
+                while (matcher.find()) {
+                    int byteOffset = text.substring(0, matcher.start()).getBytes(charset).length;
+                    //Matches starting in the overlap belong to the next chunk
+                    if (lineStart + byteOffset >= limit)
+                        break;
+                    result.add(line, base + (lineStart - from) + byteOffset, text);
+                }
+                //The whole line has been checked, so move on to the next one
+                pos = lineEnd + 1;
+            }
+        }
+        for (; counted < limit; counted++)
+            if (bytes[counted] == '\n')
+                line++;
+        result.newlines = line;
+    }
+
+    private String decodeLine(byte[] bytes, int start, int end) {
+        if (end > start && bytes[end - 1] == '\r')
+            end--;
+        return new String(bytes, start, end - start, charset);
+    }
+
+    /**
+     * Boyer-Moore-Horspool search for the literal in bytes[from, to).
+     */
+    private int indexOf(byte[] bytes, int from, int to) {
+        int m = literal.length;
+        int last = m - 1;
+        int i = from;
+        while (i <= to - m) {
+            int j = last;
+            while (j >= 0 && bytes[i + j] == literal[j])
+                j--;
+            if (j < 0)
+                return i;
+            i += shift[bytes[i + last] & 0xFF];
+        }
+        return -1;
+    }
+
+    private static int[] buildShift(byte[] literal) {
+        int[] shift = new int[256];
+        int m = literal.length;
+        for (int i = 0; i < 256; i++)
+            shift[i] = m;
+        for (int i = 0; i < m - 1; i++)
+            shift[literal[i] & 0xFF] = m - 1 - i;
+        return shift;
+    }
+
+    /**
+     * Splits the file into chunks of roughly {@link #CHUNK_SIZE}, each starting at the beginning of a line.
+     * If there's no line break within {@link #CHUNK_SIZE} of where a chunk should start, it starts mid-line instead,
+     * so no chunk is ever longer than two {@link #CHUNK_SIZE}s.
+     */
+    private static List<Long> chunkStarts(FileChannel channel) throws IOException {
+        List<Long> starts = new ArrayList<>();
+        starts.add(0L);
+        long length = channel.size();
+        if (length <= CHUNK_SIZE * 2L)
+            return starts;
+
+        ByteBuffer buffer = BufferPool.heap().acquire(BOUNDARY_BLOCK);
+        try {
+            long pos = CHUNK_SIZE;
+            outer:
+            while (pos < length) {
+                long searchEnd = Math.min(length, pos + CHUNK_SIZE);
+                for (long at = pos; at < searchEnd; ) {
+                    buffer.clear();
+                    buffer.limit((int) Math.min(BOUNDARY_BLOCK, searchEnd - at));
+                    int read = channel.read(buffer, at);
+                    if (read <= 0)
+                        break outer;
+                    byte[] bytes = buffer.array();
+                    for (int i = 0; i < read; i++) {
+                        if (bytes[buffer.arrayOffset() + i] == '\n') {
+                            long next = at + i + 1;
+                            if (next >= length)
+                                break outer;
+                            starts.add(next);
+                            pos = next + CHUNK_SIZE;
+                            continue outer;
+                        }
+                    }
+                    at += read;
+                }
+                if (searchEnd >= length)
+                    break;
+                starts.add(pos);
+                pos += CHUNK_SIZE;
+            }
+        } finally {
+            BufferPool.heap().release(buffer);
+        }
+        return starts;
+    }
+
+    /**
+     * Finds the longest run of plain characters the pattern must contain, or null if there isn't a safe one.
+     */
+    private static String requiredLiteral(Pattern pattern) {
+        if ((pattern.flags() & (Pattern.CASE_INSENSITIVE | Pattern.LITERAL | Pattern.COMMENTS)) != 0)
+            return (pattern.flags() & Pattern.LITERAL) != 0 ? pattern.pattern() : null;
+
+        String regex = pattern.pattern();
+        if (regex.contains("|") || regex.contains("(?"))
+            return null;
+
+        String best = "";
+        StringBuilder run = new StringBuilder();
+        ArrayDeque<String> outer = new ArrayDeque<>();
+        for (int i = 0; i < regex.length(); i++) {
+            char c = regex.charAt(i);
+            if (c == '(') {
+                //Text inside a group only counts once we know the group itself is required
+                best = longer(best, run);
+                run.setLength(0);
+                outer.push(best);
+                best = "";
+            } else if (c == ')') {
+                String inner = longer(best, run);
+                run.setLength(0);
+                best = outer.isEmpty() ? "" : outer.pop();
+                char next = i + 1 < regex.length() ? regex.charAt(i + 1) : 0;
+                if (next != '*' && next != '?' && next != '{' && inner.length() > best.length())
+                    best = inner;
+            } else if (c == '*' || c == '?' || c == '{') {
+                //The previous character is optional, so it can't be part of the literal
+                if (run.length() > 0)
+                    run.setLength(run.length() - 1);
+                best = longer(best, run);
+                run.setLength(0);
+                if (c == '{')
+                    i = skipTo(regex, i, '}');
+            } else if (c == '\\') {
+                //Only an escaped symbol stands for itself. Letters and digits start classes, code points and back references
+                char next = i + 1 < regex.length() ? regex.charAt(i + 1) : 'a';
+                if (Character.isLetterOrDigit(next))
+                    return null;
+                run.append(next);
+                i++;
+            } else if (c == '[' || c == '.' || c == '^' || c == '$' || c == '+') {
+                best = longer(best, run);
+                run.setLength(0);
+                if (c == '[')
+                    i = skipClass(regex, i);
+            } else {
+                run.append(c);
+            }
+        }
+        best = longer(best, run);
+        return best.isEmpty() ? null : best;
+    }
+
+    private static String longer(String best, StringBuilder run) {
+        return run.length() > best.length() ? run.toString() : best;
+    }
+
+    /**
+     * Skips a character class starting at 'i', including nested classes. A ']' straight after the opening
+     * '[' or '[^' is part of the class rather than its end.
+     */
+    private static int skipClass(String regex, int i) {
+        int depth = 0;
+        for (; i < regex.length(); i++) {
+            char c = regex.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (c == '[') {
+                depth++;
+                if (i + 1 < regex.length() && regex.charAt(i + 1) == '^')
+                    i++;
+                if (i + 1 < regex.length() && regex.charAt(i + 1) == ']')
+                    i++;
+            } else if (c == ']' && --depth == 0) {
+                return i;
+            }
+        }
+        return i;
+    }
+
+    private static int skipTo(String regex, int i, char end) {
+        for (i++; i < regex.length(); i++) {
+            char c = regex.charAt(i);
+            if (c == '\\')
+                i++;
+            else if (c == end)
+                return i;
+        }
+        return i;
+    }
+
+    private static class ChunkResult {
+        int[] lines = new int[8];
+        long[] offsets = new long[8];
+        List<String> texts = new ArrayList<>();
+        int newlines;
+        IOException error;
+
+        void add(int line, long offset, String text) {
+            int size = texts.size();
+            if (size == lines.length) {
+                lines = Arrays.copyOf(lines, size * 2);
+                offsets = Arrays.copyOf(offsets, size * 2);
+            }
+            lines[size] = line;
+            offsets[size] = offset;
+            texts.add(text);
+        }
+
+        int size() {
+            return texts.size();
+        }
+    }
+
+    /**
+     * A single place the search matched.
+     */
+    public static class Match {
+        private final File file;
+        private final long line;
+        private final long offset;
+        private final String text;
+
+        Match(File file, long line, long offset, String text) {
+            this.file = file;
+            this.line = line;
+            this.offset = offset;
+            this.text = text;
+        }
+
+        public File getFile() {
+            return file;
+        }
+
+        /**
+         * @return The line number of the match, starting from 1
+         */
+        public long getLine() {
+            return line;
+        }
+
+        /**
+         * @return The byte offset of the match from the start of the file
+         */
+        public long getOffset() {
+            return offset;
+        }
+
+        /**
+         * @return The full text of the matching line
+         */
+        public String getText() {
+            return text;
+        }
+
+        @Override
+        public String toString() {
+            return file.getPath() + ":" + line + ": " + text;
+        }
+    }
+}
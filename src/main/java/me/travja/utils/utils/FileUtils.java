@@ -1,13 +1,29 @@
 package me.travja.utils.utils;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 public class FileUtils {
 
+    //How much we hand to transferTo at once, so progress can be reported between chunks
+    private static final long TRANSFER_CHUNK = 8 * 1024 * 1024;
+    //Block size used to look for runs of zeros when copying sparse files
+    private static final int SPARSE_BLOCK = 64 * 1024;
+    //Buffer size for the text read and write paths
+    private static final int TEXT_BLOCK = 16 * 1024;
+    private static final ThreadLocal<CharBuffer> decodeBuffer = ThreadLocal.withInitial(() -> CharBuffer.allocate(TEXT_BLOCK));
+
     /**
      * Attempts to get the the resource included in the compiled jar. Returns null if none is found.
      *
@@ -103,16 +119,40 @@ public class FileUtils {
      * @param text The text to write to the file
      */
     public static void write(String name, String text) {
-        File file = new File(name);
-        try {
-            FileWriter writer = new FileWriter(file);
-            writer.write(text);
-            writer.close();
-        } catch (IOException e) {
+        CharsetEncoder encoder = Charset.defaultCharset().newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        CharBuffer in = CharBuffer.wrap(text);
+        ByteBuffer buffer = BufferPool.heap().acquire(TEXT_BLOCK);
+        long start = IOMetrics.start();
+        try (FileChannel out = FileChannel.open(Paths.get(name), StandardOpenOption.WRITE,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            CoderResult result;
+            do {
+                result = encoder.encode(in, buffer, true);
+                writeFully(out, buffer);
+            } while (result.isOverflow());
+            do {
+                result = encoder.flush(buffer);
+                writeFully(out, buffer);
+            } while (result.isOverflow());
+            if (start != 0) //Don't ask the channel for its position unless metrics are on
+                IOMetrics.record(IOMetrics.Operation.WRITE, name, out.position(), start);
+        } catch (IOException | InvalidPathException e) {
+            IOMetrics.record(IOMetrics.Operation.WRITE, name, -1, start);
             e.printStackTrace();
+        } finally {
+            BufferPool.heap().release(buffer);
         }
     }
 
+    private static void writeFully(FileChannel out, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining())
+            out.write(buffer);
+        buffer.clear();
+    }
+
     /**
      * Reads the file fully, creates a FileReader and closes it. Returns a String containing all the text in the file.
      *
@@ -131,21 +171,58 @@ public class FileUtils {
      * @return String representing the file contents.
      */
     public static String readFileFully(File file) {
+        long start = IOMetrics.start();
         try {
-            StringBuilder builder = new StringBuilder();
-            FileReader reader = new FileReader(file);
-            int c;
-            while ((c = reader.read()) != -1) {
-                builder.append((char) c);
-            }
-            reader.close();
-            return builder.toString();
-        } catch (IOException e) {
+            String data = JdkSupport.readString(file, Charset.defaultCharset());
+            if (start != 0)
+                IOMetrics.record(IOMetrics.Operation.READ, file.getPath(), file.length(), start);
+            return data;
+        } catch (IOException | InvalidPathException e) {
+            IOMetrics.record(IOMetrics.Operation.READ, file.getPath(), -1, start);
             e.printStackTrace();
         }
         return null;
     }
 
+    /**
+     * Decodes a whole file through a pooled buffer, replacing anything that isn't valid in the charset.
+     */
+    static String decode(File file, Charset charset) throws IOException {
+        CharsetDecoder decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        ByteBuffer buffer = BufferPool.heap().acquire(TEXT_BLOCK);
+        CharBuffer chars = decodeBuffer.get();
+        chars.clear();
+        try (FileChannel in = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            StringBuilder builder = new StringBuilder((int) Math.min(in.size(), Integer.MAX_VALUE - 8));
+            boolean eof = false;
+            while (!eof) {
+                eof = in.read(buffer) < 0;
+                buffer.flip();
+                CoderResult result;
+                do {
+                    result = decoder.decode(buffer, chars, eof);
+                    drain(chars, builder);
+                } while (result.isOverflow());
+                buffer.compact();
+            }
+            CoderResult result;
+            do {
+                result = decoder.flush(chars);
+                drain(chars, builder);
+            } while (result.isOverflow());
+            return builder.toString();
+        } finally {
+            BufferPool.heap().release(buffer);
+        }
+    }
+
+    private static void drain(CharBuffer chars, StringBuilder builder) {
+        builder.append(chars.array(), chars.arrayOffset(), chars.position());
+        chars.clear();
+    }
+
     /**
      * Takes in a {@link FileReader} and reads the contents. Closes the reader before exiting.
      *
@@ -174,12 +251,18 @@ public class FileUtils {
      * @param filePath The file path to write to
      */
     public static void writeObjectToFile(Object obj, String filePath) {
+        long start = IOMetrics.start();
         try {
-            ObjectOutputStream objectOut = new ObjectOutputStream(new FileOutputStream(filePath));
+            FileOutputStream fileOut = new FileOutputStream(filePath);
+            ObjectOutputStream objectOut = new ObjectOutputStream(fileOut);
             objectOut.writeObject(obj);
+            objectOut.flush();
+            long written = start == 0 ? 0 : fileOut.getChannel().position();
             objectOut.close();
+            IOMetrics.record(IOMetrics.Operation.WRITE_OBJECT, filePath, written, start);
             System.out.println("Object successfully written to file");
         } catch (IOException e) {
+            IOMetrics.record(IOMetrics.Operation.WRITE_OBJECT, filePath, -1, start);
             System.out.println("Could not write object to file.");
             e.printStackTrace();
         }
@@ -192,12 +275,18 @@ public class FileUtils {
      * @param file The file to write to
      */
     public static void writeObjectToFile(Object obj, File file) {
+        long start = IOMetrics.start();
         try {
-            ObjectOutputStream objectOut = new ObjectOutputStream(new FileOutputStream(file));
+            FileOutputStream fileOut = new FileOutputStream(file);
+            ObjectOutputStream objectOut = new ObjectOutputStream(fileOut);
             objectOut.writeObject(obj);
+            objectOut.flush();
+            long written = start == 0 ? 0 : fileOut.getChannel().position();
             objectOut.close();
+            IOMetrics.record(IOMetrics.Operation.WRITE_OBJECT, file.getPath(), written, start);
             System.out.println("Object successfully written to file");
         } catch (IOException e) {
+            IOMetrics.record(IOMetrics.Operation.WRITE_OBJECT, file.getPath(), -1, start);
             System.out.println("Could not write object to file.");
             e.printStackTrace();
         }
@@ -210,14 +299,463 @@ public class FileUtils {
      * @return An Object, read from the Stream
      */
     public static Object readObject(FileInputStream stream) {
+        long start = IOMetrics.start();
+        long before = start == 0 ? 0 : position(stream);
         try {
             ObjectInputStream oin = new ObjectInputStream(stream);
-            return oin.readObject();
+            Object obj = oin.readObject();
+            IOMetrics.record(IOMetrics.Operation.READ_OBJECT, null, start == 0 ? 0 : position(stream) - before, start);
+            return obj;
         } catch (IOException | ClassNotFoundException e) {
+            IOMetrics.record(IOMetrics.Operation.READ_OBJECT, null, -1, start);
             System.out.println("Error reading object from file. The class might have changed or is not found.");
             e.printStackTrace();
         }
         return null;
     }
 
+    private static long position(FileInputStream stream) {
+        try {
+            return stream.getChannel().position();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Copies the file at 'source' to 'dest', replacing it if it exists.
+     *
+     * @param source The path of the file to copy
+     * @param dest   The path to copy to
+     * @return Whether the copy succeeded
+     */
+    public static boolean copy(String source, String dest) {
+        return copy(new File(source), new File(dest), null);
+    }
+
+    /**
+     * Copies the source file to dest, replacing it if it exists.
+     *
+     * @param source The file to copy
+     * @param dest   The file to copy to
+     * @return Whether the copy succeeded
+     */
+    public static boolean copy(File source, File dest) {
+        return copy(source, dest, null);
+    }
+
+    /**
+     * Copies the source file to dest, replacing it if it exists.
+     * Data is moved with {@link FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)},
+     * so the kernel can copy it without passing through the heap. Copying a file onto itself does nothing.
+     *
+     * @param source   The file to copy
+     * @param dest     The file to copy to
+     * @param listener Notified as data is copied. May be null
+     * @return Whether the copy succeeded
+     */
+    public static boolean copy(File source, File dest, ProgressListener listener) {
+        if (isSameFile(source, dest))
+            return true; //Opening dest would truncate the source before it's read
+        long start = IOMetrics.start();
+        try (FileChannel in = FileChannel.open(source.toPath(), StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(dest.toPath(), StandardOpenOption.WRITE,
+                     StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            transfer(in, out, 0, in.size(), listener);
+            if (start != 0)
+                IOMetrics.record(IOMetrics.Operation.COPY, source.getPath(), in.size(), start);
+            return true;
+        } catch (IOException e) {
+            IOMetrics.record(IOMetrics.Operation.COPY, source.getPath(), -1, start);
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Copies the source file to dest, skipping over blocks that are entirely zero so the
+     * destination stays sparse on file systems that support it.<br>
+     * This reads the data through a buffer to find the holes, so prefer {@link #copy(File, File)}
+     * for files that aren't mostly empty.
+     *
+     * @param source   The file to copy
+     * @param dest     The file to copy to
+     * @param listener Notified as data is copied. May be null
+     * @return Whether the copy succeeded
+     */
+    public static boolean copySparse(File source, File dest, ProgressListener listener) {
+        if (isSameFile(source, dest))
+            return true;
+        ByteBuffer buffer = BufferPool.direct().acquire(SPARSE_BLOCK);
+        long start = IOMetrics.start();
+        try (FileChannel in = FileChannel.open(source.toPath(), StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(dest.toPath(), StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+                     StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.SPARSE)) {
+            long size = in.size();
+            long position = 0;
+            boolean endsInHole = false;
+            while (position < size) {
+                buffer.clear();
+                int read = in.read(buffer, position);
+                if (read < 0)
+                    break;
+                buffer.flip();
+                endsInHole = isZero(buffer);
+                if (!endsInHole) {
+                    while (buffer.hasRemaining())
+                        out.write(buffer, position + buffer.position());
+                }
+                position += read;
+                if (listener != null)
+                    listener.progress(position, size);
+            }
+            //Skipped holes don't extend the file, so make sure it ends up the right length
+            if (endsInHole && size > 0) {
+                buffer.clear().limit(1);
+                buffer.put(0, (byte) 0);
+                out.write(buffer, size - 1);
+            }
+            IOMetrics.record(IOMetrics.Operation.COPY, source.getPath(), size, start);
+            return true;
+        } catch (IOException e) {
+            IOMetrics.record(IOMetrics.Operation.COPY, source.getPath(), -1, start);
+            e.printStackTrace();
+            return false;
+        } finally {
+            BufferPool.direct().release(buffer);
+        }
+    }
+
+    /**
+     * Checks whether both files exist and are the same file, such as through a link or a different path.
+     */
+    private static boolean isSameFile(File a, File b) {
+        try {
+            return a.exists() && b.exists() && Files.isSameFile(a.toPath(), b.toPath());
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static boolean isZero(ByteBuffer buffer) {
+        int i = buffer.position();
+        int end = buffer.limit();
+        for (; i + 8 <= end; i += 8)
+            if (buffer.getLong(i) != 0)
+                return false;
+        for (; i < end; i++)
+            if (buffer.get(i) != 0)
+                return false;
+        return true;
+    }
+
+    /**
+     * Moves the file at 'source' to 'dest', replacing it if it exists.
+     *
+     * @param source The path of the file to move
+     * @param dest   The path to move to
+     * @return Whether the move succeeded
+     */
+    public static boolean move(String source, String dest) {
+        return move(new File(source), new File(dest));
+    }
+
+    /**
+     * Moves the source file to dest, replacing it if it exists. A rename is attempted first,
+     * falling back to a copy and delete when the file has to cross file systems.
+     *
+     * @param source The file to move
+     * @param dest   The file to move to
+     * @return Whether the move succeeded
+     */
+    public static boolean move(File source, File dest) {
+        try {
+            Files.move(source.toPath(), dest.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            return true;
+        } catch (IOException e) {
+            if (source.isFile() && copy(source, dest) && source.delete())
+                return true;
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Concatenates the sources, in order, into dest. dest is replaced if it exists.
+     *
+     * @param dest    The file to write to
+     * @param sources The files to join together
+     * @return Whether the concatenation succeeded
+     */
+    public static boolean concat(File dest, File... sources) {
+        return concat(dest, null, sources);
+    }
+
+    /**
+     * Concatenates the sources, in order, into dest. dest is replaced if it exists.
+     * dest may also be one of the sources, in which case the result is written to a temporary file
+     * and moved into place.
+     *
+     * @param dest     The file to write to
+     * @param listener Notified as data is copied, with the total across all sources. May be null
+     * @param sources  The files to join together
+     * @return Whether the concatenation succeeded
+     */
+    public static boolean concat(File dest, ProgressListener listener, File... sources) {
+        long total = 0;
+        for (File source : sources)
+            total += source.length();
+        long start = IOMetrics.start();
+        File target = dest;
+        try {
+            for (File source : sources) {
+                if (isSameFile(source, dest)) {
+                    //Truncating dest would lose a source, so build the result beside it instead
+                    target = File.createTempFile("concat", ".tmp", dest.getAbsoluteFile().getParentFile());
+                    break;
+                }
+            }
+            long done = 0;
+            try (FileChannel out = FileChannel.open(target.toPath(), StandardOpenOption.WRITE,
+                    StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                for (File source : sources) {
+                    try (FileChannel in = FileChannel.open(source.toPath(), StandardOpenOption.READ)) {
+                        long offset = done;
+                        long all = total;
+                        transfer(in, out, done, in.size(), listener == null ? null : (d, t) -> listener.progress(offset + d, all));
+                        done += in.size();
+                    }
+                }
+            }
+            if (target != dest)
+                Files.move(target.toPath(), dest.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            IOMetrics.record(IOMetrics.Operation.COPY, dest.getPath(), done, start);
+            return true;
+        } catch (IOException e) {
+            if (target != dest)
+                target.delete();
+            IOMetrics.record(IOMetrics.Operation.COPY, dest.getPath(), -1, start);
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Copies a directory and everything under it to dest, creating directories as needed.
+     *
+     * @param source   The directory to copy
+     * @param dest     Where the copy should be made
+     * @param parallel Should files be copied on multiple threads?
+     * @return Whether every file was copied
+     */
+    public static boolean copyDirectory(File source, File dest, boolean parallel) {
+        Path from = source.toPath();
+        Path to = dest.toPath();
+        List<Path> files = new ArrayList<>();
+        try {
+            Files.walkFileTree(from, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                    Files.createDirectories(to.resolve(from.relativize(dir)));
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    files.add(file);
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+
+        return (parallel ? files.parallelStream() : files.stream())
+                .map(file -> copy(file.toFile(), to.resolve(from.relativize(file)).toFile()))
+                .reduce(true, (a, b) -> a && b);
+    }
+
+    /**
+     * Transfers count bytes from the start of in to out at the given position.
+     */
+    private static void transfer(FileChannel in, FileChannel out, long position, long count, ProgressListener listener) throws IOException {
+        long done = 0;
+        while (done < count) {
+            long sent = in.transferTo(done, Math.min(TRANSFER_CHUNK, count - done), out.position(position + done));
+            if (sent <= 0 && in.size() <= done)
+                break;
+            done += sent;
+            if (listener != null)
+                listener.progress(done, count);
+        }
+    }
+
+    /**
+     * Writes the given text to the file 'name', gzip compressed.
+     *
+     * @param name The path of the file to write to
+     * @param text The text to write to the file
+     */
+    public static void writeCompressed(String name, String text) {
+        long start = IOMetrics.start();
+        try (Writer writer = new OutputStreamWriter(new GZIPOutputStream(new FileOutputStream(name), TEXT_BLOCK), Charset.defaultCharset())) {
+            writer.write(text);
+        } catch (IOException e) {
+            IOMetrics.record(IOMetrics.Operation.WRITE, name, -1, start);
+            e.printStackTrace();
+            return;
+        }
+        if (start != 0)
+            IOMetrics.record(IOMetrics.Operation.WRITE, name, new File(name).length(), start);
+    }
+
+    /**
+     * Writes the given text to the file 'name' in the block compressed format, compressing blocks on several cores.
+     * Read it back with {@link #readCompressedFully(String)} or seek within it using {@link BlockCompressedInputStream}.
+     *
+     * @param name The path of the file to write to
+     * @param text The text to write to the file
+     */
+    public static void writeBlockCompressed(String name, String text) {
+        long start = IOMetrics.start();
+        try (Writer writer = new OutputStreamWriter(new BlockCompressedOutputStream(new FileOutputStream(name)), Charset.defaultCharset())) {
+            writer.write(text);
+        } catch (IOException e) {
+            IOMetrics.record(IOMetrics.Operation.WRITE, name, -1, start);
+            e.printStackTrace();
+            return;
+        }
+        if (start != 0)
+            IOMetrics.record(IOMetrics.Operation.WRITE, name, new File(name).length(), start);
+    }
+
+    /**
+     * Reads a file written by {@link #writeCompressed(String, String)} or {@link #writeBlockCompressed(String, String)}.
+     * Uncompressed files are read as they are.
+     *
+     * @param name The path to the file to read
+     * @return String representing the file contents, or null if it couldn't be read
+     */
+    public static String readCompressedFully(String name) {
+        return readCompressedFully(new File(name));
+    }
+
+    /**
+     * Reads a file written by {@link #writeCompressed(String, String)} or {@link #writeBlockCompressed(String, String)}.
+     * Uncompressed files are read as they are. Block compressed files are decompressed in parallel.
+     *
+     * @param file The file to read
+     * @return String representing the file contents, or null if it couldn't be read
+     */
+    public static String readCompressedFully(File file) {
+        long start = IOMetrics.start();
+        String data = decompress(file);
+        if (start != 0)
+            IOMetrics.record(IOMetrics.Operation.READ, file.getPath(), data == null ? -1 : file.length(), start);
+        return data;
+    }
+
+    private static String decompress(File file) {
+        if (BlockCompressedInputStream.isBlockCompressed(file)) {
+            try (BlockCompressedInputStream in = new BlockCompressedInputStream(file)) {
+                return new String(in.readAll(), Charset.defaultCharset());
+            } catch (IOException e) {
+                e.printStackTrace();
+                return null;
+            }
+        }
+
+        try (Reader reader = new InputStreamReader(getCompressedStream(file), Charset.defaultCharset())) {
+            StringBuilder builder = new StringBuilder();
+            char[] chars = decodeBuffer.get().array();
+            int n;
+            while ((n = reader.read(chars)) != -1)
+                builder.append(chars, 0, n);
+            return builder.toString();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * Opens a file for reading, decompressing it if it is gzip or block compressed.
+     *
+     * @param file The file to read
+     * @return An {@link InputStream} of the uncompressed data
+     * @throws IOException if the file can't be opened
+     */
+    public static InputStream getCompressedStream(File file) throws IOException {
+        if (BlockCompressedInputStream.isBlockCompressed(file))
+            return new BlockCompressedInputStream(file);
+        BufferedInputStream in = new BufferedInputStream(new FileInputStream(file), TEXT_BLOCK);
+        in.mark(2);
+        int first = in.read();
+        int second = in.read();
+        in.reset();
+        if (first == (GZIPInputStream.GZIP_MAGIC & 0xFF) && second == (GZIPInputStream.GZIP_MAGIC >> 8))
+            return new GZIPInputStream(in, TEXT_BLOCK);
+        return in;
+    }
+
+    /**
+     * Writes an object to the given file in the block compressed format, compressing on several cores.
+     *
+     * @param obj  The object to write
+     * @param file The file to write to
+     */
+    public static void writeObjectToFileCompressed(Object obj, File file) {
+        long start = IOMetrics.start();
+        try (ObjectOutputStream objectOut = new ObjectOutputStream(new BlockCompressedOutputStream(new FileOutputStream(file)))) {
+            objectOut.writeObject(obj);
+        } catch (IOException e) {
+            IOMetrics.record(IOMetrics.Operation.WRITE_OBJECT, file.getPath(), -1, start);
+            System.out.println("Could not write object to file.");
+            e.printStackTrace();
+            return;
+        }
+        if (start != 0)
+            IOMetrics.record(IOMetrics.Operation.WRITE_OBJECT, file.getPath(), file.length(), start);
+        System.out.println("Object successfully written to file");
+    }
+
+    /**
+     * Reads an object from a file, decompressing it if it was written by
+     * {@link #writeObjectToFileCompressed(Object, File)} or is gzip compressed.
+     *
+     * @param file The file to read from
+     * @return An Object, read from the file
+     */
+    public static Object readCompressedObject(File file) {
+        long start = IOMetrics.start();
+        try (ObjectInputStream oin = new ObjectInputStream(getCompressedStream(file))) {
+            Object obj = oin.readObject();
+            if (start != 0)
+                IOMetrics.record(IOMetrics.Operation.READ_OBJECT, file.getPath(), file.length(), start);
+            return obj;
+        } catch (IOException | ClassNotFoundException e) {
+            IOMetrics.record(IOMetrics.Operation.READ_OBJECT, file.getPath(), -1, start);
+            System.out.println("Error reading object from file. The class might have changed or is not found.");
+            e.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * Checks whether two files have exactly the same contents.
+     *
+     * @param first  The first file
+     * @param second The second file
+     * @return Whether the contents match. False if either file can't be read
+     */
+    public static boolean contentEquals(File first, File second) {
+        try {
+            return JdkSupport.mismatch(first.toPath(), second.toPath()) == -1;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
 }
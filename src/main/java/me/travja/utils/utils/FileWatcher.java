@@ -0,0 +1,392 @@
+package me.travja.utils.utils;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Watches files and directories for changes using the file system's own notifications instead of polling.<br>
+ * Events are debounced: a burst of events for one file (an editor saving, a log being appended to) is combined
+ * into a single callback once the file has been quiet for {@link #getDebounce()} milliseconds.
+ * Callbacks are run on an executor so slow listeners don't hold up the watcher.<br>
+ * Files loaded through {@link #getContents(File)} or {@link #load(File)} are kept up to date automatically.
+ */
+public class FileWatcher implements Closeable {
+
+    public enum Change {
+        CREATED,
+        MODIFIED,
+        DELETED
+    }
+
+    private final WatchService service;
+    private final Executor executor;
+    private final boolean ownsExecutor;
+    private final long debounce;
+    private final Thread thread;
+    private volatile boolean running = true;
+
+    private final Map<WatchKey, Path> keys = new ConcurrentHashMap<>();
+    private final List<Registration> registrations = new CopyOnWriteArrayList<>();
+    private final Map<Path, Change> pending = new LinkedHashMap<>();
+    private final Map<Path, Long> lastEvent = new HashMap<>();
+
+    private final Map<Path, String> contents = new ConcurrentHashMap<>();
+    private final Map<Path, TempFile> loaded = new ConcurrentHashMap<>();
+    //Bumped for a path each time a change is dispatched, so reads that raced a change aren't cached
+    private final Map<Path, Long> generations = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a watcher that runs callbacks on a single background thread and waits 50ms for events to settle.
+     *
+     * @throws IOException if the file system doesn't support watching
+     */
+    public FileWatcher() throws IOException {
+        this(Executors.newSingleThreadExecutor(daemonFactory("TravjaUtils-FileWatcher-Callback")), 50, true);
+    }
+
+    /**
+     * Creates a watcher.
+     *
+     * @param executor Where listener callbacks should be run
+     * @param debounce How long, in milliseconds, a file must be quiet before its changes are reported
+     * @throws IOException if the file system doesn't support watching
+     */
+    public FileWatcher(Executor executor, long debounce) throws IOException {
+        this(executor, debounce, false);
+    }
+
+    private FileWatcher(Executor executor, long debounce, boolean ownsExecutor) throws IOException {
+        this.ownsExecutor = ownsExecutor;
+        this.service = FileSystems.getDefault().newWatchService();
+        this.executor = executor;
+        this.debounce = Math.max(0, debounce);
+        this.thread = daemonFactory("TravjaUtils-FileWatcher").newThread(this::run);
+        thread.start();
+    }
+
+    public long getDebounce() {
+        return debounce;
+    }
+
+    /**
+     * Watches a single file, or the files directly inside a directory.
+     *
+     * @param file     The file or directory to watch
+     * @param listener Told about each change
+     * @return Whether the watch was registered
+     */
+    public boolean watch(File file, FileChangeListener listener) {
+        Path path = file.toPath().toAbsolutePath().normalize();
+        try {
+            if (Files.isDirectory(path)) {
+                register(path);
+                registrations.add(new Registration(path, null, false, listener));
+            } else {
+                register(path.getParent());
+                registrations.add(new Registration(path.getParent(), path, false, listener));
+            }
+            return true;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Watches every file under a directory, including directories created after this call.
+     *
+     * @param directory The directory to watch
+     * @param listener  Told about each change
+     * @return Whether the watch was registered
+     */
+    public boolean watchRecursive(File directory, FileChangeListener listener) {
+        Path path = directory.toPath().toAbsolutePath().normalize();
+        try {
+            registerTree(path);
+            registrations.add(new Registration(path, null, true, listener));
+            return true;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Stops sending changes to the listener.
+     *
+     * @param listener The listener to remove
+     */
+    public void unwatch(FileChangeListener listener) {
+        registrations.removeIf(registration -> registration.listener == listener);
+    }
+
+    /**
+     * Gets the contents of a file, reading it only the first time or after it has changed.
+     *
+     * @param file The file to read
+     * @return The file contents, or null if it couldn't be read
+     */
+    public String getContents(File file) {
+        Path path = file.toPath().toAbsolutePath().normalize();
+        String data = contents.get(path);
+        if (data != null)
+            return data;
+        if (!isWatched(path))
+            watch(path.toFile(), (f, change) -> {
+            });
+        long generation = generation(path);
+        String read = FileUtils.readFileFully(path.toFile());
+        if (read != null) {
+            //Only cache what we read if the file hasn't changed since we started reading it
+            generations.compute(path, (p, current) -> {
+                if ((current == null ? 0 : current) == generation)
+                    contents.put(path, read);
+                return current;
+            });
+        }
+        return read;
+    }
+
+    /**
+     * Loads a file into a {@link TempFile} whose data is refreshed whenever the file changes.
+     * Loading the same file again returns the same TempFile.
+     *
+     * @param file The file to load
+     * @return The TempFile, named after the file's path
+     */
+    public TempFile load(File file) {
+        Path path = file.toPath().toAbsolutePath().normalize();
+        return loaded.computeIfAbsent(path, p -> {
+            TempFile temp = new TempFile(p.toString());
+            if (!isWatched(p))
+                watch(p.toFile(), (f, change) -> {
+                });
+            //Read again if the file changed while we were reading it
+            String data;
+            long generation;
+            do {
+                generation = generation(p);
+                data = FileUtils.readFileFully(p.toFile());
+            } while (generation != generation(p));
+            temp.setData(data == null ? "" : data);
+            return temp;
+        });
+    }
+
+    /**
+     * Drops any cached contents for the file, so the next read goes back to disk.
+     *
+     * @param file The file to forget
+     */
+    public void invalidate(File file) {
+        Path path = file.toPath().toAbsolutePath().normalize();
+        contents.remove(path);
+        loaded.remove(path);
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        thread.interrupt();
+        service.close();
+        if (ownsExecutor)
+            ((ExecutorService) executor).shutdown();
+    }
+
+    private void run() {
+        while (running) {
+            try {
+                WatchKey key = service.poll(timeUntilDue(), TimeUnit.MILLISECONDS);
+                while (key != null) {
+                    collect(key);
+                    key = service.poll();
+                }
+                flushDue();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+        }
+    }
+
+    private void collect(WatchKey key) {
+        Path dir = keys.get(key);
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (dir == null)
+                continue;
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                overflow(dir);
+                continue;
+            }
+            Path path = dir.resolve((Path) event.context());
+            if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE) {
+                record(path, Change.CREATED);
+                if (Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS) && isRecursive(path)) {
+                    try {
+                        registerTree(path);
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                    }
+                }
+            } else if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE) {
+                record(path, Change.DELETED);
+            } else {
+                record(path, Change.MODIFIED);
+            }
+        }
+        if (!key.reset())
+            keys.remove(key);
+    }
+
+    /**
+     * Events for the directory were lost, so treat everything in it that we care about as changed:
+     * the directory itself, every cached file and every individually watched file.
+     */
+    private void overflow(Path dir) {
+        record(dir, Change.MODIFIED);
+        Set<Path> affected = new HashSet<>();
+        for (Path path : contents.keySet())
+            if (dir.equals(path.getParent()))
+                affected.add(path);
+        for (Path path : loaded.keySet())
+            if (dir.equals(path.getParent()))
+                affected.add(path);
+        for (Registration registration : registrations)
+            if (registration.file != null && dir.equals(registration.root))
+                affected.add(registration.file);
+        for (Path path : affected)
+            record(path, Files.exists(path) ? Change.MODIFIED : Change.DELETED);
+    }
+
+    /**
+     * Combines a new event with any pending one for the same path.
+     */
+    private void record(Path path, Change change) {
+        Change previous = pending.get(path);
+        Change combined = change;
+        if (previous == Change.CREATED && change == Change.DELETED) {
+            //Came and went before anyone noticed
+            pending.remove(path);
+            lastEvent.remove(path);
+            return;
+        } else if (previous == Change.CREATED) {
+            combined = Change.CREATED;
+        } else if (previous == Change.DELETED && change == Change.CREATED) {
+            combined = Change.MODIFIED;
+        }
+        pending.put(path, combined);
+        lastEvent.put(path, System.currentTimeMillis());
+    }
+
+    private long timeUntilDue() {
+        if (lastEvent.isEmpty())
+            return 1000;
+        long now = System.currentTimeMillis();
+        long soonest = Long.MAX_VALUE;
+        for (long time : lastEvent.values())
+            soonest = Math.min(soonest, time + debounce - now);
+        return Math.max(1, soonest);
+    }
+
+    private void flushDue() {
+        long now = System.currentTimeMillis();
+        Iterator<Map.Entry<Path, Change>> it = pending.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Path, Change> entry = it.next();
+            Path path = entry.getKey();
+            if (now - lastEvent.get(path) < debounce)
+                continue;
+            it.remove();
+            lastEvent.remove(path);
+            dispatch(path, entry.getValue());
+        }
+    }
+
+    private void dispatch(Path path, Change change) {
+        generations.merge(path, 1L, Long::sum);
+        contents.remove(path);
+        TempFile temp = loaded.get(path);
+        if (temp != null) {
+            executor.execute(() -> {
+                String data = change == Change.DELETED ? null : FileUtils.readFileFully(path.toFile());
+                temp.setData(data == null ? "" : data);
+            });
+        }
+
+        for (Registration registration : registrations) {
+            if (registration.matches(path))
+                executor.execute(() -> registration.listener.changed(path.toFile(), change));
+        }
+    }
+
+    private long generation(Path path) {
+        Long generation = generations.get(path);
+        return generation == null ? 0 : generation;
+    }
+
+    private boolean isWatched(Path path) {
+        for (Registration registration : registrations)
+            if (registration.matches(path))
+                return true;
+        return false;
+    }
+
+    private boolean isRecursive(Path path) {
+        for (Registration registration : registrations)
+            if (registration.recursive && path.startsWith(registration.root))
+                return true;
+        return false;
+    }
+
+    private void register(Path dir) throws IOException {
+        if (keys.containsValue(dir))
+            return;
+        WatchKey key = dir.register(service, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+        keys.put(key, dir);
+    }
+
+    private void registerTree(Path root) throws IOException {
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                register(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private static ThreadFactory daemonFactory(String name) {
+        return r -> {
+            Thread thread = new Thread(r, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private static class Registration {
+        final Path root;
+        final Path file;
+        final boolean recursive;
+        final FileChangeListener listener;
+
+        Registration(Path root, Path file, boolean recursive, FileChangeListener listener) {
+            this.root = root;
+            this.file = file;
+            this.recursive = recursive;
+            this.listener = listener;
+        }
+
+        boolean matches(Path path) {
+            if (file != null)
+                return path.equals(file);
+            if (recursive)
+                return path.startsWith(root);
+            return root.equals(path.getParent()) || path.equals(root);
+        }
+    }
+}
@@ -0,0 +1,289 @@
+package me.travja.utils.utils;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts and times the file operations done through {@link FileUtils}, so slow batch jobs can be traced to
+ * the reads, writes or (de)serialization responsible.<br>
+ * Tracks counts, errors, bytes and a latency histogram per {@link Operation}, the paths that spend the most time
+ * in I/O, and logs any operation slower than {@link #getSlowThresholdMillis()}. While enabled, the numbers are
+ * published over JMX and each operation is recorded as a Flight Recorder event.<br>
+ * Metrics are off by default, and cost a single volatile read per operation until they are turned on with
+ * {@link #setEnabled(boolean)} or the system property 'travjautils.metrics=true'.
+ */
+public class IOMetrics {
+
+    public enum Operation {
+        READ,
+        WRITE,
+        READ_OBJECT,
+        WRITE_OBJECT,
+        COPY
+    }
+
+    private static final String MBEAN_NAME = "me.travja.utils:type=IOMetrics";
+    private static final int BUCKETS = 64;
+    private static final int MAX_PATHS = 10000;
+    private static final boolean JFR_AVAILABLE = hasClass("jdk.jfr.Event");
+
+    private static volatile boolean enabled = false;
+    private static volatile long slowThresholdNanos = 1000L * 1000 * 1000;
+
+    private static final Stats[] stats = new Stats[Operation.values().length];
+    private static final Map<String, PathStats> paths = new ConcurrentHashMap<>();
+
+    static {
+        for (int i = 0; i < stats.length; i++)
+            stats[i] = new Stats();
+        if (Boolean.getBoolean("travjautils.metrics"))
+            setEnabled(true);
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Turns metrics on or off. Turning them on also registers the JMX bean.
+     *
+     * @param enable Should operations be measured?
+     */
+    public static synchronized void setEnabled(boolean enable) {
+        enabled = enable;
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(MBEAN_NAME);
+            if (enable && !server.isRegistered(name))
+                server.registerMBean(new Bean(), name);
+            else if (!enable && server.isRegistered(name))
+                server.unregisterMBean(name);
+        } catch (Exception e) {
+            System.err.println("Couldn't register IOMetrics with JMX.");
+            e.printStackTrace();
+        }
+    }
+
+    public static long getSlowThresholdMillis() {
+        return slowThresholdNanos / 1000000;
+    }
+
+    /**
+     * Sets how long an operation may take before it is logged as slow. 1000ms by default.
+     *
+     * @param millis The threshold in milliseconds
+     */
+    public static void setSlowThresholdMillis(long millis) {
+        slowThresholdNanos = millis * 1000000;
+    }
+
+    /**
+     * Marks the start of an operation.
+     *
+     * @return A start time to hand to {@link #record(Operation, String, long, long)}, or 0 if metrics are off
+     */
+    public static long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Records a finished operation.
+     *
+     * @param operation What was done
+     * @param path      The file involved. May be null
+     * @param bytes     How many bytes were moved, or -1 if the operation failed
+     * @param start     The value returned by {@link #start()}
+     */
+    public static void record(Operation operation, String path, long bytes, long start) {
+        if (start == 0)
+            return;
+        long elapsed = System.nanoTime() - start;
+        boolean failed = bytes < 0;
+
+        Stats op = stats[operation.ordinal()];
+        op.count.increment();
+        if (failed)
+            op.errors.increment();
+        else
+            op.bytes.add(bytes);
+        op.histogram.incrementAndGet(bucket(elapsed));
+
+        if (path != null) {
+            PathStats stat = paths.get(path);
+            if (stat == null && paths.size() < MAX_PATHS)
+                stat = paths.computeIfAbsent(path, p -> new PathStats());
+            if (stat != null) {
+                stat.count.increment();
+                stat.nanos.add(elapsed);
+                if (!failed)
+                    stat.bytes.add(bytes);
+            }
+        }
+
+        if (elapsed >= slowThresholdNanos)
+            System.err.printf("Slow %s of %s: %.1f ms%s%n", operation, path, elapsed / 1e6,
+                    failed ? " (failed)" : ", " + bytes + " bytes");
+
+        if (JFR_AVAILABLE)
+            FileIOEvent.commit(operation.name(), path, Math.max(bytes, 0), elapsed, failed);
+    }
+
+    public static long getCount(Operation operation) {
+        return stats[operation.ordinal()].count.sum();
+    }
+
+    public static long getErrors(Operation operation) {
+        return stats[operation.ordinal()].errors.sum();
+    }
+
+    public static long getBytes(Operation operation) {
+        return stats[operation.ordinal()].bytes.sum();
+    }
+
+    /**
+     * Estimates a latency percentile from the histogram. Buckets are powers of two, so the result is the upper
+     * bound of the bucket the percentile falls in.
+     *
+     * @param operation  The operation to look at
+     * @param percentile A value between 0 and 100
+     * @return The latency in nanoseconds, or 0 if nothing has been recorded
+     */
+    public static long getPercentile(Operation operation, double percentile) {
+        AtomicLongArray histogram = stats[operation.ordinal()].histogram;
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++)
+            total += histogram.get(i);
+        if (total == 0)
+            return 0;
+        long target = (long) Math.ceil(total * percentile / 100);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += histogram.get(i);
+            if (seen >= Math.max(1, target))
+                return i >= 62 ? Long.MAX_VALUE : (1L << (i + 1)) - 1;
+        }
+        return Long.MAX_VALUE;
+    }
+
+    /**
+     * Gets the paths that have spent the most total time in I/O.
+     *
+     * @param n How many paths to return
+     * @return Lines of 'path: time, count, bytes', worst first
+     */
+    public static List<String> getTopPaths(int n) {
+        List<Map.Entry<String, PathStats>> entries = new ArrayList<>(paths.entrySet());
+        entries.sort((a, b) -> Long.compare(b.getValue().nanos.sum(), a.getValue().nanos.sum()));
+        List<String> top = new ArrayList<>();
+        for (int i = 0; i < Math.min(n, entries.size()); i++) {
+            PathStats stat = entries.get(i).getValue();
+            top.add(String.format("%s: %.1f ms over %d ops, %d bytes",
+                    entries.get(i).getKey(), stat.nanos.sum() / 1e6, stat.count.sum(), stat.bytes.sum()));
+        }
+        return top;
+    }
+
+    /**
+     * Clears every counter.
+     */
+    public static void reset() {
+        for (int i = 0; i < stats.length; i++)
+            stats[i] = new Stats();
+        paths.clear();
+    }
+
+    private static int bucket(long nanos) {
+        return nanos <= 0 ? 0 : 63 - Long.numberOfLeadingZeros(nanos);
+    }
+
+    private static boolean hasClass(String name) {
+        try {
+            Class.forName(name, false, IOMetrics.class.getClassLoader());
+            return true;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
+    private static class Stats {
+        final LongAdder count = new LongAdder();
+        final LongAdder errors = new LongAdder();
+        final LongAdder bytes = new LongAdder();
+        final AtomicLongArray histogram = new AtomicLongArray(BUCKETS);
+    }
+
+    private static class PathStats {
+        final LongAdder count = new LongAdder();
+        final LongAdder nanos = new LongAdder();
+        final LongAdder bytes = new LongAdder();
+    }
+
+    private static class Bean implements IOMetricsMXBean {
+        @Override
+        public boolean isEnabled() {
+            return IOMetrics.isEnabled();
+        }
+
+        @Override
+        public void setEnabled(boolean enabled) {
+            IOMetrics.setEnabled(enabled);
+        }
+
+        @Override
+        public long getSlowThresholdMillis() {
+            return IOMetrics.getSlowThresholdMillis();
+        }
+
+        @Override
+        public void setSlowThresholdMillis(long millis) {
+            IOMetrics.setSlowThresholdMillis(millis);
+        }
+
+        @Override
+        public Map<String, Long> getCounts() {
+            Map<String, Long> map = new LinkedHashMap<>();
+            for (Operation op : Operation.values())
+                map.put(op.name(), getCount(op));
+            return map;
+        }
+
+        @Override
+        public Map<String, Long> getErrors() {
+            Map<String, Long> map = new LinkedHashMap<>();
+            for (Operation op : Operation.values())
+                map.put(op.name(), IOMetrics.getErrors(op));
+            return map;
+        }
+
+        @Override
+        public Map<String, Long> getBytes() {
+            Map<String, Long> map = new LinkedHashMap<>();
+            for (Operation op : Operation.values())
+                map.put(op.name(), IOMetrics.getBytes(op));
+            return map;
+        }
+
+        @Override
+        public Map<String, Double> getP99Millis() {
+            Map<String, Double> map = new LinkedHashMap<>();
+            for (Operation op : Operation.values())
+                map.put(op.name(), getPercentile(op, 99) / 1e6);
+            return map;
+        }
+
+        @Override
+        public String[] getTopPaths() {
+            return IOMetrics.getTopPaths(10).toArray(new String[0]);
+        }
+
+        @Override
+        public void reset() {
+            IOMetrics.reset();
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package me.travja.utils.utils;
+
+import java.util.Map;
+
+/**
+ * The JMX view of {@link IOMetrics}, registered as me.travja.utils:type=IOMetrics while metrics are enabled.
+ */
+public interface IOMetricsMXBean {
+
+    boolean isEnabled();
+
+    void setEnabled(boolean enabled);
+
+    long getSlowThresholdMillis();
+
+    void setSlowThresholdMillis(long millis);
+
+    /**
+     * @return How many times each operation has run
+     */
+    Map<String, Long> getCounts();
+
+    /**
+     * @return How many times each operation has failed
+     */
+    Map<String, Long> getErrors();
+
+    /**
+     * @return Total bytes moved by each operation
+     */
+    Map<String, Long> getBytes();
+
+    /**
+     * @return The approximate 99th percentile latency of each operation, in milliseconds
+     */
+    Map<String, Double> getP99Millis();
+
+    /**
+     * @return The paths that have spent the most time in I/O, worst first
+     */
+    String[] getTopPaths();
+
+    void reset();
+}
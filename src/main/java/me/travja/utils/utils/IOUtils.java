@@ -2,23 +2,22 @@ package me.travja.utils.utils;
 
 import me.travja.utils.menu.EndAction;
 
-import java.awt.*;
-import java.awt.event.KeyEvent;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.List;
 
 public class IOUtils {
 
-    private static Robot robot;
-    private static HashMap<Character, Integer> keyMap = new HashMap<>();
-
     private static BufferedReader reader;
+    private static final ThreadLocal<BufferedReader> localReader = new ThreadLocal<>();
+    private static List<String> recording;
+    private static final ThreadLocal<String> editable = new ThreadLocal<>();
 
-    private static int failed = 0;
+    private static final ThreadLocal<int[]> failed = ThreadLocal.withInitial(() -> new int[1]);
 
     private static EndAction endAction = () -> {
         System.err.println("Input stream was terminated. Exiting program.");
@@ -34,6 +33,10 @@ public class IOUtils {
     }
 
     private static BufferedReader getReader() throws IOException {
+        BufferedReader local = localReader.get();
+        if (local != null)
+            return local;
+
         if (reader == null)
             reader = new BufferedReader(new InputStreamReader(System.in));
 
@@ -42,6 +45,39 @@ public class IOUtils {
         return reader;
     }
 
+    /**
+     * Overrides where the current thread reads its input from. Other threads continue to read from System.in.
+     * Pass null to go back to System.in.<br>
+     * Empty lines from an overriding reader are treated as ordinary input, so they never trigger the
+     * {@link #getEndAction() end action}.
+     *
+     * @param input The reader to take input from, or null
+     */
+    public static void setReader(BufferedReader input) {
+        if (input == null)
+            localReader.remove();
+        else
+            localReader.set(input);
+    }
+
+    /**
+     * Starts recording every line read through {@link #read()}, so a session can be replayed later.
+     */
+    public static void startRecording() {
+        recording = Collections.synchronizedList(new ArrayList<>());
+    }
+
+    /**
+     * Stops recording input.
+     *
+     * @return The lines read since {@link #startRecording()} was called, or an empty list if not recording
+     */
+    public static List<String> stopRecording() {
+        List<String> ret = recording;
+        recording = null;
+        return ret == null ? new ArrayList<>() : new ArrayList<>(ret);
+    }
+
     /**
      * Read in user input from the command line
      *
@@ -49,18 +85,37 @@ public class IOUtils {
      */
     public static String read() {
         String ret = null;
+        String prefill = editable.get();
+        editable.remove();
         try {
-            ret = getReader().readLine();
+            if (prefill != null && localReader.get() == null && LineEditor.isSupported()) {
+                try {
+                    ret = LineEditor.readLine(prefill);
+                } catch (IOException e) {
+                    //The terminal couldn't be used after all, so still give the user a line to type on
+                    ret = getReader().readLine();
+                }
+            } else
+                ret = getReader().readLine();
         } catch (IOException e) {
             e.printStackTrace();
         }
 
+        List<String> rec = recording;
+        if (rec != null && ret != null)
+            rec.add(ret);
+
+        //Only System.in can be cut off. A thread-local reader ends its own input, and blank lines in it are deliberate
+        if (localReader.get() != null)
+            return ret;
+
+        int[] count = failed.get();
         if ((ret == null || ret.trim().isEmpty()) && System.console() == null) {
-            failed++;
-            if (failed >= 5 && endAction != null) //If there is no end-action, we'll assume things are being handled on the developer's side
+            count[0]++;
+            if (count[0] >= 5 && endAction != null) //If there is no end-action, we'll assume things are being handled on the developer's side
                 endAction.use();
         } else
-            failed = 0;
+            count[0] = 0;
 
         return ret;
     }
@@ -286,65 +341,30 @@ public class IOUtils {
     }
 
 
-    private static void populateMap() {
-        keyMap.put('?', KeyEvent.VK_SLASH);
-        keyMap.put('!', KeyEvent.VK_1);
-        keyMap.put('@', KeyEvent.VK_2);
-        keyMap.put('#', KeyEvent.VK_3);
-        keyMap.put('$', KeyEvent.VK_4);
-        keyMap.put('%', KeyEvent.VK_5);
-        keyMap.put('^', KeyEvent.VK_6);
-        keyMap.put('&', KeyEvent.VK_7);
-        keyMap.put('*', KeyEvent.VK_8);
-        keyMap.put('(', KeyEvent.VK_9);
-        keyMap.put(')', KeyEvent.VK_0);
-        keyMap.put('_', KeyEvent.VK_MINUS);
-        keyMap.put('+', KeyEvent.VK_EQUALS);
-        keyMap.put('~', KeyEvent.VK_BACK_QUOTE);
-        keyMap.put('{', KeyEvent.VK_OPEN_BRACKET);
-        keyMap.put('}', KeyEvent.VK_CLOSE_BRACKET);
-        keyMap.put('|', KeyEvent.VK_BACK_SLASH);
-        keyMap.put(':', KeyEvent.VK_SEMICOLON);
-        keyMap.put('<', KeyEvent.VK_COMMA);
-        keyMap.put('>', KeyEvent.VK_PERIOD);
-    }
-
     /**
-     * Uses {@link Robot} to print text that is editable by the user.
+     * Places text on the input line for the user to edit. The next call to {@link #read()} on this thread
+     * returns the edited line.<br>
+     * Editing needs a Unix terminal (see {@link LineEditor}). Elsewhere, such as when input is piped in,
+     * the text is dropped and the next line is read as normal.
      * Text may not be multi-line.
      *
      * @param text The text to show to the user
      */
     public static void printEditable(String text) {
-        initRobot();
-
-        char[] chars = text.toCharArray();
-        for (char c : chars) {
-            if (Character.isUpperCase(c) || keyMap.containsKey(c))
-                robot.keyPress(KeyEvent.VK_SHIFT);
-            try {
-                int press = keyMap.containsKey(c) ? keyMap.get(c) : Character.toUpperCase(c);
-                robot.keyPress(press);
-                robot.keyRelease(press);
-            } catch (Exception e) {
-                System.out.println("Caught error. " + c + " -- " + e.getMessage());
-            }
-            if (Character.isUpperCase(c) || keyMap.containsKey(c))
-                robot.keyRelease(KeyEvent.VK_SHIFT);
-        }
+        editable.set(text);
     }
 
-    private static void initRobot() {
-        if (robot == null) {
-            populateMap();
-            try {
-                robot = new Robot();
-                robot.setAutoDelay(10);
-                robot.setAutoWaitForIdle(true);
-            } catch (AWTException e) {
-                e.printStackTrace();
-            }
-        }
+    /**
+     * Prompt the user for a line, starting with text they can edit.
+     *
+     * @param prompt What should we tell the user?
+     * @param text   The text to start with
+     * @return The line from the user
+     */
+    public static String promptForEdit(String prompt, String text) {
+        System.out.print(prompt.trim() + " ");
+        printEditable(text);
+        return read();
     }
 
 }
@@ -0,0 +1,115 @@
+package me.travja.utils.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * The hot paths that have faster implementations on newer JDKs.<br>
+ * This is the Java 8 version. When built on JDK 21 or later, the jar is multi-release and carries a replacement
+ * from src/main/java21 that JDK 21+ loads instead. Both versions must keep the same public methods.
+ * This class is meant for the library's own use.
+ */
+public final class JdkSupport {
+
+    private static final int COMPARE_BLOCK = 64 * 1024;
+
+    private JdkSupport() {
+    }
+
+    /**
+     * Reads a whole file as text, replacing anything that isn't valid in the charset.
+     *
+     * @param file    The file to read
+     * @param charset The charset to decode with
+     * @return The file contents
+     * @throws IOException if the file can't be read
+     */
+    public static String readString(File file, Charset charset) throws IOException {
+        return FileUtils.decode(file, charset);
+    }
+
+    /**
+     * Finds the first byte where two files differ, like Files.mismatch on JDK 12+.
+     *
+     * @param first  The first file
+     * @param second The second file
+     * @return The offset of the first difference, or -1 if the files are identical
+     * @throws IOException if either file can't be read
+     */
+    public static long mismatch(Path first, Path second) throws IOException {
+        if (Files.isSameFile(first, second))
+            return -1;
+        ByteBuffer a = BufferPool.heap().acquire(COMPARE_BLOCK);
+        ByteBuffer b = BufferPool.heap().acquire(COMPARE_BLOCK);
+        try (FileChannel one = FileChannel.open(first, StandardOpenOption.READ);
+             FileChannel two = FileChannel.open(second, StandardOpenOption.READ)) {
+            long sizeOne = one.size();
+            long sizeTwo = two.size();
+            long common = Math.min(sizeOne, sizeTwo);
+            byte[] bytesA = a.array();
+            byte[] bytesB = b.array();
+            long position = 0;
+            while (position < common) {
+                int length = (int) Math.min(COMPARE_BLOCK, common - position);
+                fill(one, a, position, length);
+                fill(two, b, position, length);
+                for (int i = 0; i < length; i++) {
+                    if (bytesA[a.arrayOffset() + i] != bytesB[b.arrayOffset() + i])
+                        return position + i;
+                }
+                position += length;
+            }
+            return sizeOne == sizeTwo ? -1 : common;
+        } finally {
+            BufferPool.heap().release(a);
+            BufferPool.heap().release(b);
+        }
+    }
+
+    /**
+     * Creates the executor that interactive menu sessions are run on.
+     *
+     * @param threads How many sessions may run at once
+     * @return A new {@link ExecutorService}
+     */
+    public static ExecutorService newSessionExecutor(int threads) {
+        return Executors.newFixedThreadPool(threads);
+    }
+
+    /**
+     * Gets the total bytes allocated so far by every live thread, or -1 if the JVM can't tell us.
+     *
+     * @return The allocated byte count
+     */
+    public static long totalAllocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean))
+            return -1;
+        com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+        if (!sunBean.isThreadAllocatedMemorySupported() || !sunBean.isThreadAllocatedMemoryEnabled())
+            return -1;
+        long total = 0;
+        for (long bytes : sunBean.getThreadAllocatedBytes(sunBean.getAllThreadIds()))
+            if (bytes > 0)
+                total += bytes;
+        return total;
+    }
+
+    private static void fill(FileChannel channel, ByteBuffer buffer, long position, int length) throws IOException {
+        buffer.clear().limit(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0)
+                throw new IOException("File shrank while being compared");
+        }
+    }
+}
@@ -0,0 +1,258 @@
+package me.travja.utils.utils;
+
+import java.io.*;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A small line editor for Unix terminals. The terminal is switched out of line mode with 'stty' while a line is
+ * being edited, so text can be placed in the buffer before the user starts typing.<br>
+ * Supports the arrow keys, Home/End, Backspace/Delete and the usual Ctrl shortcuts
+ * (A, E, B, F, D, H, K, U and W). Lines are kept on a single row.
+ */
+public class LineEditor {
+
+    private static final int CTRL_A = 1, CTRL_B = 2, CTRL_D = 4, CTRL_E = 5, CTRL_F = 6, CTRL_H = 8,
+            CTRL_K = 11, CTRL_U = 21, CTRL_W = 23, ESC = 27, DEL = 127;
+    //How long to wait for the rest of an escape sequence before treating Esc as a key on its own
+    private static final long ESC_TIMEOUT = 50;
+
+    private static final File TTY = new File("/dev/tty");
+    private static Boolean supported;
+    private static volatile String savedState;
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            //Don't leave the terminal in raw mode if the program is killed mid-edit
+            String state = savedState;
+            if (state != null)
+                stty(state);
+        }));
+    }
+
+    /**
+     * Checks whether lines can be edited here: input and output must be a terminal, and 'stty' must be available.
+     *
+     * @return Whether {@link #readLine(String)} can be used
+     */
+    public static synchronized boolean isSupported() {
+        if (supported == null)
+            supported = System.console() != null && TTY.exists() && !System.getProperty("os.name").startsWith("Windows")
+                    && stty("-g") != null;
+        return supported;
+    }
+
+    /**
+     * Reads a line from the terminal with the given text already typed in and the cursor at its end.
+     *
+     * @param prefill The text to start with. Must be a single line
+     * @return The line once the user presses Enter, or null if input ended
+     * @throws IOException if the terminal can't be read or switched out of line mode
+     */
+    public static synchronized String readLine(String prefill) throws IOException {
+        String state = stty("-g");
+        if (state == null || stty("-icanon", "-echo", "min", "1", "time", "0") == null) {
+            supported = false;
+            throw new IOException("Couldn't switch the terminal out of line mode");
+        }
+        savedState = state;
+        try {
+            return edit(prefill == null ? "" : prefill.replaceAll("[\\r\\n]", ""), new PushbackInputStream(System.in), System.out);
+        } finally {
+            savedState = null;
+            stty(state);
+        }
+    }
+
+    private static String edit(String prefill, PushbackInputStream in, PrintStream out) throws IOException {
+        StringBuilder line = new StringBuilder(prefill);
+        int cursor = line.length();
+        out.print(line);
+        out.flush();
+
+        while (true) {
+            int c = in.read();
+            int before = cursor;
+            switch (c) {
+                case -1:
+                    return line.length() == 0 ? null : line.toString();
+                case '\r':
+                case '\n':
+                    out.println();
+                    return line.toString();
+                case CTRL_D:
+                    if (line.length() == 0) {
+                        out.println();
+                        return null;
+                    }
+                    if (cursor < line.length())
+                        line.deleteCharAt(cursor);
+                    break;
+                case CTRL_H:
+                case DEL:
+                    if (cursor > 0)
+                        line.deleteCharAt(--cursor);
+                    break;
+                case CTRL_A:
+                    cursor = 0;
+                    break;
+                case CTRL_E:
+                    cursor = line.length();
+                    break;
+                case CTRL_B:
+                    cursor = Math.max(0, cursor - 1);
+                    break;
+                case CTRL_F:
+                    cursor = Math.min(line.length(), cursor + 1);
+                    break;
+                case CTRL_K:
+                    line.setLength(cursor);
+                    break;
+                case CTRL_U:
+                    line.delete(0, cursor);
+                    cursor = 0;
+                    break;
+                case CTRL_W:
+                    int start = cursor;
+                    while (start > 0 && line.charAt(start - 1) == ' ')
+                        start--;
+                    while (start > 0 && line.charAt(start - 1) != ' ')
+                        start--;
+                    line.delete(start, cursor);
+                    cursor = start;
+                    break;
+                case ESC:
+                    cursor = escape(in, line, cursor);
+                    break;
+                default:
+                    if (c < ' ')
+                        continue;
+                    String typed = decode(c, in);
+                    if (cursor == line.length()) {
+                        //Typing at the end is the common case, so just echo it
+                        line.append(typed);
+                        cursor = line.length();
+                        out.print(typed);
+                        out.flush();
+                        continue;
+                    }
+                    line.insert(cursor, typed);
+                    cursor += typed.length();
+            }
+            redraw(out, line, before, cursor);
+        }
+    }
+
+    /**
+     * Handles an escape sequence for the arrow, Home, End and Delete keys, ignoring any others.
+     * An Esc that isn't the start of a sequence does nothing, and the key after it is left to be read as normal.
+     */
+    private static int escape(PushbackInputStream in, StringBuilder line, int cursor) throws IOException {
+        //Terminals send a whole sequence at once, so a bare Esc has nothing straight after it
+        long deadline = System.currentTimeMillis() + ESC_TIMEOUT;
+        while (in.available() == 0) {
+            if (System.currentTimeMillis() >= deadline)
+                return cursor;
+            try {
+                Thread.sleep(5);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return cursor;
+            }
+        }
+        int type = in.read();
+        if (type != '[' && type != 'O') {
+            if (type >= 0)
+                in.unread(type);
+            return cursor;
+        }
+        int param = 0;
+        int c = in.read();
+        while (c >= '0' && c <= '9' || c == ';') {
+            if (c != ';')
+                param = param * 10 + (c - '0');
+            c = in.read();
+        }
+        switch (c) {
+            case 'D':
+                return Math.max(0, cursor - 1);
+            case 'C':
+                return Math.min(line.length(), cursor + 1);
+            case 'H':
+                return 0;
+            case 'F':
+                return line.length();
+            case '~':
+                if (param == 1 || param == 7)
+                    return 0;
+                if (param == 4 || param == 8)
+                    return line.length();
+                if (param == 3 && cursor < line.length())
+                    line.deleteCharAt(cursor);
+                return cursor;
+            default:
+                return cursor;
+        }
+    }
+
+    /**
+     * Reads the rest of a multi-byte character, if the first byte starts one.
+     */
+    private static String decode(int first, InputStream in) throws IOException {
+        Charset charset = Charset.defaultCharset();
+        if (first < 0x80 || !charset.equals(StandardCharsets.UTF_8))
+            return new String(new byte[]{(byte) first}, charset);
+        int length = first >= 0xF0 ? 4 : first >= 0xE0 ? 3 : 2;
+        byte[] bytes = new byte[length];
+        bytes[0] = (byte) first;
+        for (int i = 1; i < length; i++) {
+            int next = in.read();
+            if (next < 0)
+                break;
+            bytes[i] = (byte) next;
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Rewrites the line, which starts 'from' columns left of the terminal's cursor, and leaves the
+     * terminal's cursor at 'cursor'.
+     */
+    private static void redraw(PrintStream out, StringBuilder line, int from, int cursor) {
+        StringBuilder sb = new StringBuilder();
+        if (from > 0)
+            sb.append("\033[").append(from).append('D');
+        sb.append(line).append("\033[K");
+        if (line.length() > cursor)
+            sb.append("\033[").append(line.length() - cursor).append('D');
+        out.print(sb);
+        out.flush();
+    }
+
+    /**
+     * Runs stty against the controlling terminal.
+     *
+     * @return What stty printed, or null if it failed
+     */
+    private static String stty(String... args) {
+        String[] command = new String[args.length + 1];
+        command[0] = "stty";
+        System.arraycopy(args, 0, command, 1, args.length);
+        try {
+            Process process = new ProcessBuilder(command)
+                    .redirectInput(ProcessBuilder.Redirect.from(TTY))
+                    .redirectError(ProcessBuilder.Redirect.to(new File("/dev/null")))
+                    .start();
+            String output;
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+                output = reader.readLine();
+            }
+            return process.waitFor() == 0 ? (output == null ? "" : output.trim()) : null;
+        } catch (IOException e) {
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+}
@@ -0,0 +1,397 @@
+package me.travja.utils.utils;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * A compact index of line offsets in a text file, so any line or range of lines can be read without
+ * loading the whole file.<br>
+ * Rather than storing every line, the index keeps a checkpoint every {@link #getInterval()} lines and scans
+ * forward from the nearest one. The index can be saved next to the file and brought up to date when the file
+ * is appended to.<br>
+ * Lines are split on '\n' (a preceding '\r' is dropped), so the file must use an ASCII-compatible charset.
+ */
+public class LineIndex {
+
+    public static final int DEFAULT_INTERVAL = 1024;
+
+    private static final int MAGIC = 0x4C494458; //LIDX
+    private static final int VERSION = 1;
+    private static final int SCAN_BLOCK = 256 * 1024;
+    private static final long MIN_CHUNK = 8 * 1024 * 1024;
+
+    private final File file;
+    private final int interval;
+    private long[] lines = new long[16];
+    private long[] offsets = new long[16];
+    private int size = 0;
+
+    private long indexedLength = 0;
+    private long lastModified = 0;
+    private long newlines = 0;
+    private long lastLineStart = 0;
+
+    private LineIndex(File file, int interval) {
+        this.file = file;
+        this.interval = interval;
+        add(0, 0);
+    }
+
+    /**
+     * Builds an index for the file, checkpointing every {@link #DEFAULT_INTERVAL} lines.
+     *
+     * @param file The file to index
+     * @return The {@link LineIndex}, or null if the file couldn't be read
+     */
+    public static LineIndex build(File file) {
+        return build(file, DEFAULT_INTERVAL);
+    }
+
+    /**
+     * Builds an index for the file. Large files are scanned in chunks on multiple threads.
+     *
+     * @param file     The file to index
+     * @param interval How many lines apart the checkpoints should be. Smaller is faster to read, but makes the index larger
+     * @return The {@link LineIndex}, or null if the file couldn't be read
+     */
+    public static LineIndex build(File file, int interval) {
+        LineIndex index = new LineIndex(file, Math.max(1, interval));
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long length = channel.size();
+            index.lastModified = file.lastModified();
+            int cores = Runtime.getRuntime().availableProcessors();
+            long chunkSize = Math.max(MIN_CHUNK, length / (cores * 4L) + 1);
+            int chunks = (int) ((length + chunkSize - 1) / chunkSize);
+
+            Chunk[] results = new Chunk[chunks];
+            IntStream.range(0, chunks).parallel().forEach(i -> {
+                long start = i * chunkSize;
+                results[i] = scan(channel, start, Math.min(length, start + chunkSize), index.interval);
+            });
+
+            for (Chunk chunk : results) {
+                if (chunk.error != null)
+                    throw chunk.error;
+                index.merge(chunk);
+            }
+            index.indexedLength = length;
+            return index;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Loads the index saved next to the file by {@link #save()}. If the file was appended to since, the index is
+     * brought up to date. If the saved index is missing or no longer matches the file, a new one is built.
+     *
+     * @param file The indexed file (not the index file itself)
+     * @return The {@link LineIndex}, or null if the file couldn't be read
+     */
+    public static LineIndex load(File file) {
+        File sidecar = getIndexFile(file);
+        if (!sidecar.exists())
+            return build(file);
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(sidecar)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION)
+                return build(file);
+            LineIndex index = new LineIndex(file, in.readInt());
+            index.indexedLength = in.readLong();
+            index.lastModified = in.readLong();
+            index.newlines = in.readLong();
+            index.lastLineStart = in.readLong();
+            int count = in.readInt();
+            index.size = 0;
+            for (int i = 0; i < count; i++)
+                index.add(in.readLong(), in.readLong());
+
+            long length = file.length();
+            if (length < index.indexedLength || (length == index.indexedLength && file.lastModified() != index.lastModified))
+                return build(file, index.interval);
+            index.update();
+            return index;
+        } catch (IOException e) {
+            System.err.println("Couldn't read line index " + sidecar + ". Rebuilding it.");
+            return build(file);
+        }
+    }
+
+    /**
+     * Gets where the index for the given file is saved.
+     *
+     * @param file The indexed file
+     * @return The sidecar index file
+     */
+    public static File getIndexFile(File file) {
+        return new File(file.getPath() + ".idx");
+    }
+
+    /**
+     * Saves the index next to the file, so it can be picked up again with {@link #load(File)}.
+     *
+     * @return Whether the index was saved
+     */
+    public boolean save() {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(getIndexFile(file))))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(interval);
+            out.writeLong(indexedLength);
+            out.writeLong(lastModified);
+            out.writeLong(newlines);
+            out.writeLong(lastLineStart);
+            out.writeInt(size);
+            for (int i = 0; i < size; i++) {
+                out.writeLong(lines[i]);
+                out.writeLong(offsets[i]);
+            }
+            return true;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Indexes anything appended to the file since the index was built. If the file got shorter, the whole index
+     * is rebuilt instead.
+     *
+     * @return Whether the index is now up to date
+     */
+    public boolean update() {
+        long length = file.length();
+        if (length == indexedLength)
+            return true;
+        if (length < indexedLength) {
+            LineIndex fresh = build(file, interval);
+            if (fresh == null)
+                return false;
+            lines = fresh.lines;
+            offsets = fresh.offsets;
+            size = fresh.size;
+            indexedLength = fresh.indexedLength;
+            lastModified = fresh.lastModified;
+            newlines = fresh.newlines;
+            lastLineStart = fresh.lastLineStart;
+            return true;
+        }
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            length = channel.size();
+            //Continue the count from where we left off, so checkpoints stay on multiples of the interval
+            Chunk chunk = scan(channel, indexedLength, length, interval, newlines);
+            if (chunk.error != null)
+                throw chunk.error;
+            for (int i = 0; i < chunk.size; i++)
+                add(chunk.lines[i], chunk.offsets[i]);
+            newlines += chunk.newlines;
+            if (chunk.lastLineStart >= 0)
+                lastLineStart = chunk.lastLineStart;
+            indexedLength = length;
+            lastModified = file.lastModified();
+            return true;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public int getInterval() {
+        return interval;
+    }
+
+    /**
+     * @return How many lines the file had when it was last indexed
+     */
+    public long getLineCount() {
+        return newlines + (indexedLength > lastLineStart ? 1 : 0);
+    }
+
+    /**
+     * Reads a single line.
+     *
+     * @param line The line number, starting from 0
+     * @return The line's text, or null if there is no such line or it couldn't be read
+     */
+    public String getLine(long line) {
+        List<String> result = getLines(line, line + 1);
+        return result == null || result.isEmpty() ? null : result.get(0);
+    }
+
+    /**
+     * Reads a range of lines.
+     *
+     * @param from The first line to read, starting from 0
+     * @param to   The line to stop before
+     * @return The lines in the range that exist, or null if the file couldn't be read
+     */
+    public List<String> getLines(long from, long to) {
+        to = Math.min(to, getLineCount());
+        List<String> result = new ArrayList<>();
+        if (from < 0 || from >= to)
+            return result;
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            channel.position(seek(channel, from));
+            InputStream in = new BufferedInputStream(Channels.newInputStream(channel));
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            for (long i = from; i < to; i++) {
+                String line = readLine(in, buffer, Charset.defaultCharset());
+                if (line == null)
+                    break;
+                result.add(line);
+            }
+            return result;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Reads up to the next '\n', splitting the same way the index counts lines. Unlike
+     * {@link BufferedReader#readLine()}, a lone '\r' doesn't end the line.
+     *
+     * @return The line, or null if there wasn't one
+     */
+    private static String readLine(InputStream in, ByteArrayOutputStream buffer, Charset charset) throws IOException {
+        buffer.reset();
+        int b;
+        while ((b = in.read()) != -1 && b != '\n')
+            buffer.write(b);
+        if (b == -1 && buffer.size() == 0)
+            return null;
+        byte[] bytes = buffer.toByteArray();
+        int length = bytes.length;
+        if (length > 0 && bytes[length - 1] == '\r')
+            length--;
+        return new String(bytes, 0, length, charset);
+    }
+
+    /**
+     * Finds the byte offset where the given line starts, scanning forward from the nearest checkpoint.
+     */
+    private long seek(FileChannel channel, long line) throws IOException {
+        int cp = Arrays.binarySearch(lines, 0, size, line);
+        if (cp < 0)
+            cp = -cp - 2;
+        long current = lines[cp];
+        long position = offsets[cp];
+        if (current == line)
+            return position;
+
+        ByteBuffer buffer = BufferPool.heap().acquire(SCAN_BLOCK);
+        try {
+            byte[] bytes = buffer.array();
+            int base = buffer.arrayOffset();
+            while (position < indexedLength) {
+                buffer.clear();
+                int read = channel.read(buffer, position);
+                if (read <= 0)
+                    break;
+                for (int i = 0; i < read; i++) {
+                    if (bytes[base + i] == '\n' && ++current == line)
+                        return position + i + 1;
+                }
+                position += read;
+            }
+            return position;
+        } finally {
+            BufferPool.heap().release(buffer);
+        }
+    }
+
+    private void merge(Chunk chunk) {
+        for (int i = 0; i < chunk.size; i++)
+            add(newlines + chunk.lines[i], chunk.offsets[i]);
+        newlines += chunk.newlines;
+        if (chunk.lastLineStart >= 0)
+            lastLineStart = chunk.lastLineStart;
+    }
+
+    private void add(long line, long offset) {
+        if (size == lines.length) {
+            lines = Arrays.copyOf(lines, size * 2);
+            offsets = Arrays.copyOf(offsets, size * 2);
+        }
+        lines[size] = line;
+        offsets[size] = offset;
+        size++;
+    }
+
+    private static Chunk scan(FileChannel channel, long start, long end, int interval) {
+        return scan(channel, start, end, interval, 0);
+    }
+
+    /**
+     * Counts the newlines between start and end, recording a checkpoint each time the count (continuing on from
+     * 'before') reaches a multiple of the interval. Checkpoint line numbers are relative to 'before' being 0
+     * when scanning in parallel, and absolute when 'before' is the real count.
+     */
+    private static Chunk scan(FileChannel channel, long start, long end, int interval, long before) {
+        Chunk chunk = new Chunk();
+        ByteBuffer buffer = BufferPool.heap().acquire(SCAN_BLOCK);
+        try {
+            byte[] bytes = buffer.array();
+            int base = buffer.arrayOffset();
+            long position = start;
+            long count = 0;
+            while (position < end) {
+                buffer.clear();
+                buffer.limit((int) Math.min(buffer.capacity(), end - position));
+                int read = channel.read(buffer, position);
+                if (read <= 0)
+                    break;
+                for (int i = 0; i < read; i++) {
+                    if (bytes[base + i] != '\n')
+                        continue;
+                    count++;
+                    long lineStart = position + i + 1;
+                    chunk.lastLineStart = lineStart;
+                    if ((before + count) % interval == 0)
+                        chunk.add(before + count, lineStart);
+                }
+                position += read;
+            }
+            chunk.newlines = count;
+        } catch (IOException e) {
+            chunk.error = e;
+        } finally {
+            BufferPool.heap().release(buffer);
+        }
+        return chunk;
+    }
+
+    private static class Chunk {
+        long[] lines = new long[16];
+        long[] offsets = new long[16];
+        int size = 0;
+        long newlines = 0;
+        long lastLineStart = -1;
+        IOException error;
+
+        void add(long line, long offset) {
+            if (size == lines.length) {
+                lines = Arrays.copyOf(lines, size * 2);
+                offsets = Arrays.copyOf(offsets, size * 2);
+            }
+            lines[size] = line;
+            offsets[size] = offset;
+            size++;
+        }
+    }
+}
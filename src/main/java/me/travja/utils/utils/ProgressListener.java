@@ -0,0 +1,11 @@
+package me.travja.utils.utils;
+
+public interface ProgressListener {
+    /**
+     * Called periodically while a long-running file operation makes progress.
+     *
+     * @param done  How many bytes have been processed so far
+     * @param total How many bytes there are in total
+     */
+    void progress(long done, long total);
+}
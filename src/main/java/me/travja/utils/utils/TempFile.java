@@ -9,6 +9,7 @@ public class TempFile {
 
     private String name;
     private StringBuilder data = new StringBuilder();
+    private int version = 0;
 
     public TempFile(InputStream stream) {
         if (stream == null)
@@ -37,23 +38,33 @@ public class TempFile {
         this.name = name;
     }
 
-    public void write(Object data) {
+    public synchronized void write(Object data) {
         this.data.append(data.toString());
+        version++;
     }
 
-    public void writeln(Object data) {
+    public synchronized void writeln(Object data) {
         this.data.append(data.toString()).append("\n");
+        version++;
     }
 
-    public String[] getLines() {
+    public synchronized String[] getLines() {
         return this.data.toString().split("\n");
     }
 
-    public void setData(String data) {
+    public synchronized void setData(String data) {
         this.data = new StringBuilder(data);
+        version++;
     }
 
-    public String getData() {
+    public synchronized String getData() {
         return data.toString();
     }
+
+    /**
+     * @return A counter that changes whenever the data does, so anything derived from the data knows when to rebuild
+     */
+    synchronized int getVersion() {
+        return version;
+    }
 }
@@ -0,0 +1,221 @@
+package me.travja.utils.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * A text template with named placeholders, such as 'Dear {{name}},'.<br>
+ * The text is parsed once into literal segments and slots, so rendering only appends the pieces in order
+ * instead of searching and copying the whole text for each placeholder. Templates are immutable and can be
+ * shared between threads.<br>
+ * Templates for a {@link TempFile} or resource are cached, and a TempFile's template is rebuilt automatically
+ * when its data changes. A placeholder with no value is left in the output as written.
+ */
+public class Template {
+
+    public static final String DEFAULT_OPEN = "{{";
+    public static final String DEFAULT_CLOSE = "}}";
+
+    private static final Map<String, Template> resources = new ConcurrentHashMap<>();
+    private static final Map<TempFile, Template> files = Collections.synchronizedMap(new WeakHashMap<>());
+
+    private final String[] literals;
+    private final int[] slots;
+    private final String[] names;
+    private final String[] placeholders;
+    private final int literalLength;
+    private final int version;
+
+    private Template(String text, String open, String close, int version) {
+        List<String> literals = new ArrayList<>();
+        List<Integer> slots = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        List<String> placeholders = new ArrayList<>();
+
+        int last = 0;
+        int start;
+        while ((start = text.indexOf(open, last)) >= 0) {
+            int end = text.indexOf(close, start + open.length());
+            if (end < 0)
+                break;
+            String name = text.substring(start + open.length(), end).trim();
+            int index = names.indexOf(name);
+            if (index < 0) {
+                index = names.size();
+                names.add(name);
+                placeholders.add(text.substring(start, end + close.length()));
+            }
+            literals.add(text.substring(last, start));
+            slots.add(index);
+            last = end + close.length();
+        }
+        literals.add(text.substring(last));
+
+        this.literals = literals.toArray(new String[0]);
+        this.slots = new int[slots.size()];
+        for (int i = 0; i < this.slots.length; i++)
+            this.slots[i] = slots.get(i);
+        this.names = names.toArray(new String[0]);
+        this.placeholders = placeholders.toArray(new String[0]);
+        int length = 0;
+        for (String literal : this.literals)
+            length += literal.length();
+        this.literalLength = length;
+        this.version = version;
+    }
+
+    /**
+     * Compiles a template using {{name}} placeholders.
+     *
+     * @param text The template text
+     * @return The compiled {@link Template}
+     */
+    public static Template compile(String text) {
+        return compile(text, DEFAULT_OPEN, DEFAULT_CLOSE);
+    }
+
+    /**
+     * Compiles a template with custom placeholder delimiters, such as '%' and '%' or '${' and '}'.
+     *
+     * @param text  The template text
+     * @param open  What starts a placeholder
+     * @param close What ends a placeholder
+     * @return The compiled {@link Template}
+     */
+    public static Template compile(String text, String open, String close) {
+        return new Template(text, open, close, 0);
+    }
+
+    /**
+     * Gets the template for a {@link TempFile}, compiling it only the first time or after the file's data has
+     * changed.
+     *
+     * @param file The file holding the template text
+     * @return The compiled {@link Template}
+     */
+    public static Template of(TempFile file) {
+        Template template = files.get(file);
+        //Lock the file so the data and version we read belong together
+        synchronized (file) {
+            int version = file.getVersion();
+            if (template == null || template.version != version) {
+                template = new Template(file.getData(), DEFAULT_OPEN, DEFAULT_CLOSE, version);
+                files.put(file, template);
+            }
+        }
+        return template;
+    }
+
+    /**
+     * Loads and compiles a template from the classpath, as with {@link FileUtils#getResource(String)}.
+     * Each resource is only loaded and compiled once.
+     *
+     * @param filename The resource to load
+     * @return The compiled {@link Template}, or null if there is no such resource
+     */
+    public static Template getResource(String filename) {
+        return resources.computeIfAbsent(filename, name -> {
+            InputStream stream = FileUtils.getResourceAsStream(name);
+            //Returning null leaves nothing cached, so a resource added later is still found
+            return stream == null ? null : compile(new TempFile(stream).getData());
+        });
+    }
+
+    /**
+     * Forgets every cached template.
+     */
+    public static void clearCache() {
+        resources.clear();
+        files.clear();
+    }
+
+    /**
+     * @return The distinct placeholder names, in the order they first appear
+     */
+    public List<String> getNames() {
+        return Collections.unmodifiableList(Arrays.asList(names));
+    }
+
+    /**
+     * Renders the template into a new String.
+     *
+     * @param values The value for each placeholder name
+     * @return The rendered text
+     */
+    public String render(Map<String, ?> values) {
+        return render(values, new StringBuilder(estimateLength())).toString();
+    }
+
+    /**
+     * Appends the rendered template to 'out'. Reuse the same builder, clearing it with setLength(0),
+     * to render many pages without growing a new buffer each time.
+     *
+     * @param values The value for each placeholder name
+     * @param out    Where to append the output
+     * @return out
+     */
+    public StringBuilder render(Map<String, ?> values, StringBuilder out) {
+        return render(values::get, out);
+    }
+
+    /**
+     * Appends the rendered template to 'out', looking each placeholder up as it is reached.
+     *
+     * @param values Gives the value for a placeholder name, or null to leave it as written
+     * @param out    Where to append the output
+     * @return out
+     */
+    public StringBuilder render(Function<String, ?> values, StringBuilder out) {
+        try {
+            renderTo(values, out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); //StringBuilder doesn't throw
+        }
+        return out;
+    }
+
+    /**
+     * Writes the rendered template straight to a {@link Writer}, without building the output in memory.
+     *
+     * @param values The value for each placeholder name
+     * @param out    Where to write the output
+     * @throws IOException if the writer fails
+     */
+    public void render(Map<String, ?> values, Writer out) throws IOException {
+        renderTo(values::get, out);
+    }
+
+    /**
+     * Writes the rendered template straight to a {@link Writer}, looking each placeholder up as it is reached.
+     *
+     * @param values Gives the value for a placeholder name, or null to leave it as written
+     * @param out    Where to write the output
+     * @throws IOException if the writer fails
+     */
+    public void render(Function<String, ?> values, Writer out) throws IOException {
+        renderTo(values, out);
+    }
+
+    private void renderTo(Function<String, ?> values, Appendable out) throws IOException {
+        for (int i = 0; i < slots.length; i++) {
+            out.append(literals[i]);
+            Object value = values.apply(names[slots[i]]);
+            if (value == null)
+                out.append(placeholders[slots[i]]);
+            else if (value instanceof CharSequence)
+                out.append((CharSequence) value);
+            else
+                out.append(value.toString());
+        }
+        out.append(literals[slots.length]);
+    }
+
+    private int estimateLength() {
+        return literalLength + slots.length * 16;
+    }
+}
@@ -0,0 +1,79 @@
+package me.travja.utils.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * The hot paths that have faster implementations on newer JDKs.<br>
+ * This is the JDK 21 version, loaded from the multi-release jar in place of the Java 8 one.
+ * Both versions must keep the same public methods.
+ * This class is meant for the library's own use.
+ */
+public final class JdkSupport {
+
+    private JdkSupport() {
+    }
+
+    /**
+     * Reads a whole file as text with {@link Files#readString(Path, Charset)}, which decodes in one pass without
+     * an intermediate buffer. Files that aren't valid in the charset fall back to the replacing decoder.
+     *
+     * @param file    The file to read
+     * @param charset The charset to decode with
+     * @return The file contents
+     * @throws IOException if the file can't be read
+     */
+    public static String readString(File file, Charset charset) throws IOException {
+        try {
+            return Files.readString(file.toPath(), charset);
+        } catch (CharacterCodingException e) {
+            return FileUtils.decode(file, charset);
+        }
+    }
+
+    /**
+     * Finds the first byte where two files differ using {@link Files#mismatch(Path, Path)}.
+     *
+     * @param first  The first file
+     * @param second The second file
+     * @return The offset of the first difference, or -1 if the files are identical
+     * @throws IOException if either file can't be read
+     */
+    public static long mismatch(Path first, Path second) throws IOException {
+        return Files.mismatch(first, second);
+    }
+
+    /**
+     * Creates the executor that interactive menu sessions are run on, backed by virtual threads so sessions
+     * waiting on input or sleeping don't tie up platform threads.
+     *
+     * @param threads How many sessions may run at once
+     * @return A new {@link ExecutorService}
+     */
+    public static ExecutorService newSessionExecutor(int threads) {
+        return Executors.newFixedThreadPool(threads, Thread.ofVirtual().name("TravjaUtils-Session-", 0).factory());
+    }
+
+    /**
+     * Gets the total bytes allocated so far by every thread, including those that have finished, or -1 if the
+     * JVM can't tell us. Virtual thread allocations are counted against their carrier threads.
+     *
+     * @return The allocated byte count
+     */
+    public static long totalAllocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean sunBean))
+            return -1;
+        if (!sunBean.isThreadAllocatedMemorySupported() || !sunBean.isThreadAllocatedMemoryEnabled())
+            return -1;
+        return sunBean.getTotalThreadAllocatedBytes();
+    }
+}